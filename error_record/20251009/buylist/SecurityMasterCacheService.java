@@ -11,7 +11,11 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
@@ -32,6 +36,17 @@ public class SecurityMasterCacheService {
 
     public static final String REDIS_KEY_MAPPING = "security_master:mapping";
     public static final String REDIS_KEY_PREFIX_DATA = "security_master:data:";
+    /**
+     * 本次加载已处理完的表名集合（包括没有数据的表），与数据缓存同时过期；
+     * 该 key 还在说明缓存仍然有效，查不到的产品代码不会再触发全量重新加载
+     */
+    public static final String REDIS_KEY_LOADED = "security_master:loaded";
+
+    /**
+     * SCAN 每次迭代建议返回的 key 数量 / 每条 UNLINK 命令最多删除的 key 数量
+     */
+    private static final int SCAN_COUNT = 500;
+    private static final int UNLINK_CHUNK_SIZE = 500;
 
     @Resource
     private AssetTypeMapper assetTypeMapper;
@@ -101,6 +116,7 @@ public class SecurityMasterCacheService {
 
             // 2. 构建映射关系 Map: {businessType}:{assetType} → tableName
             Map<String, String> mappingMap = new HashMap<>();
+            Set<String> loadedTables = new HashSet<>();
 
             // 3. 遍历每条配置，加载对应的 SECURITY_MASTER 表数据
             for (AssetTypeDo config : assetTypeConfigs) {
@@ -155,6 +171,7 @@ public class SecurityMasterCacheService {
                         log.warn("表 {} 没有数据或数据为空（assetType={}, matchField={}）",
                                 fullTableName, assetType, matchField);
                     }
+                    loadedTables.add(fullTableName);
 
                 } catch (Exception e) {
                     log.error("加载表数据失败: assetType={}, systemCode={}, 错误: {}",
@@ -170,6 +187,12 @@ public class SecurityMasterCacheService {
                 log.info("✓ 映射关系已保存到 Redis，共 {} 条映射", mappingMap.size());
             }
 
+            // 7. 最后写入已加载表名集合，过期时间不早于数据缓存
+            if (!loadedTables.isEmpty()) {
+                redisTemplate.opsForSet().add(REDIS_KEY_LOADED, loadedTables.toArray());
+                redisTemplate.expire(REDIS_KEY_LOADED, 1, TimeUnit.HOURS);
+            }
+
             long endTime = System.currentTimeMillis();
             log.info("========== SecurityMaster 数据加载完成 ==========");
             log.info("共加载 {} 张表，总计 {} 条记录，耗时 {} ms", totalTables, totalRecords, (endTime - startTime));
@@ -212,6 +235,16 @@ public class SecurityMasterCacheService {
         if (clientId != null) {
             return (String) clientId;
         }
+        // 表已加载（包括没有数据、不写数据缓存的表），说明只是这个产品代码不存在（输错或已退市），不能因此触发全量重新加载
+        if (Boolean.TRUE.equals(redisTemplate.opsForSet().isMember(REDIS_KEY_LOADED, tableName))) {
+            log.debug("表 {} 中没有产品代码 {}", tableName, productCode);
+            return null;
+        }
+        // 缓存仍然有效但这张表没有加载（配置缺少匹配字段或加载失败），重新加载也得到同样的结果
+        if (Boolean.TRUE.equals(redisTemplate.hasKey(REDIS_KEY_LOADED))) {
+            log.warn("表 {} 未加载到缓存，不触发重新加载", tableName);
+            return null;
+        }
         // 数据缓存可能已过期，尝试重新加载一次缓存
         log.info("找不到数据缓存，尝试重新加载 SecurityMaster 缓存...");
         refreshCache();
@@ -244,11 +277,11 @@ public class SecurityMasterCacheService {
      */
     public void clearAllCache() {
         log.warn("开始清除所有 SecurityMaster 缓存...");
-        // 删除映射关系缓存
-        redisTemplate.delete(REDIS_KEY_MAPPING);
-        // 删除所有数据缓存
-        redisTemplate.delete(redisTemplate.keys(REDIS_KEY_PREFIX_DATA + "*"));
-        log.info("SecurityMaster 缓存已清除");
+        // 删除映射关系缓存和已加载表名集合
+        redisTemplate.unlink(Arrays.asList(REDIS_KEY_MAPPING, REDIS_KEY_LOADED));
+        // 删除所有数据缓存（SCAN + UNLINK，不使用会阻塞 Redis 的 KEYS）
+        long deletedCount = unlinkByPattern(REDIS_KEY_PREFIX_DATA + "*");
+        log.info("SecurityMaster 缓存已清除，共删除 {} 个数据key", deletedCount);
     }
 
     /**
@@ -269,13 +302,13 @@ public class SecurityMasterCacheService {
 
         try {
             // 1. 删除映射关系缓存 security_master:mapping
-            Boolean deletedMapping = redisTemplate.delete(REDIS_KEY_MAPPING);
+            Boolean deletedMapping = redisTemplate.unlink(REDIS_KEY_MAPPING);
             log.info("  ✓ 映射关系缓存: {}", deletedMapping != null && deletedMapping ? "已删除" : "不存在或已清空");
+            redisTemplate.unlink(REDIS_KEY_LOADED);
 
             // 2. 删除所有数据缓存 security_master:data:*
-            Set<String> dataKeys = redisTemplate.keys(REDIS_KEY_PREFIX_DATA + "*");
-            if (dataKeys != null && !dataKeys.isEmpty()) {
-                Long deletedCount = redisTemplate.delete(dataKeys);
+            long deletedCount = unlinkByPattern(REDIS_KEY_PREFIX_DATA + "*");
+            if (deletedCount > 0) {
                 log.info("  ✓ 数据缓存: 已删除 {} 个key", deletedCount);
             } else {
                 log.info("  ✓ 数据缓存: 无旧数据");
@@ -289,6 +322,41 @@ public class SecurityMasterCacheService {
         }
     }
 
+    /**
+     * 用 SCAN 游标按 pattern 分批查找 key，每攒够一块就立即发送一条 UNLINK，不把全部 key 攒在内存里
+     * KEYS 是 O(keyspace) 的阻塞命令，共用的 Redis 上会卡住所有业务
+     *
+     * @param pattern 匹配模式，例如 security_master:data:*
+     * @return 实际删除的 key 数量
+     */
+    @SuppressWarnings("unchecked")
+    private long unlinkByPattern(String pattern) {
+        RedisSerializer<String> keySerializer = (RedisSerializer<String>) redisTemplate.getKeySerializer();
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(SCAN_COUNT).build();
+        long deleted = 0L;
+        List<byte[]> chunk = new ArrayList<>(UNLINK_CHUNK_SIZE);
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                chunk.add(keySerializer.serialize(cursor.next()));
+                if (chunk.size() >= UNLINK_CHUNK_SIZE) {
+                    deleted += unlinkChunk(chunk);
+                    chunk.clear();
+                }
+            }
+        }
+        deleted += unlinkChunk(chunk);
+        return deleted;
+    }
+
+    private long unlinkChunk(List<byte[]> rawKeys) {
+        if (rawKeys.isEmpty()) {
+            return 0L;
+        }
+        byte[][] keys = rawKeys.toArray(new byte[0][]);
+        Long deleted = redisTemplate.execute((RedisCallback<Long>) connection -> connection.keyCommands().unlink(keys));
+        return deleted != null ? deleted : 0L;
+    }
+
     private Date getBusinessDate() {
         return batchBusinessDateResultService.getBuinessDate();
     }
@@ -0,0 +1,31 @@
+//package cn.bochk.pap.server.business.service;
+//
+//import java.util.concurrent.ConcurrentHashMap;
+//
+///**
+// * 单次缓存构建期间使用的字符串字典
+// * 同一批 clientId 会在几十万个产品代码、多个资产类型之间反复出现，
+// * JDBC 每行都会创建新的 String 实例，这里把相同内容统一成一个实例，构建完成后随本次构建一起丢弃
+// * 多个加载线程共享同一个字典，所以使用 ConcurrentHashMap
+// *
+// * @author liuhb
+// */
+//final class ClientIdDictionary {
+//
+//    private final ConcurrentHashMap<String, String> canonical = new ConcurrentHashMap<>();
+//
+//    /**
+//     * 返回与 value 内容相同的规范实例
+//     */
+//    String canonicalize(String value) {
+//        String existing = canonical.putIfAbsent(value, value);
+//        return existing != null ? existing : value;
+//    }
+//
+//    /**
+//     * 字典中不同字符串的数量
+//     */
+//    int size() {
+//        return canonical.size();
+//    }
+//}
@@ -0,0 +1,188 @@
+//package cn.bochk.pap.server.business.service;
+//
+//import org.springframework.data.redis.serializer.RedisSerializer;
+//import org.springframework.data.redis.serializer.SerializationException;
+//
+//import java.io.ByteArrayOutputStream;
+//import java.nio.ByteBuffer;
+//import java.nio.charset.StandardCharsets;
+//import java.util.Arrays;
+//import java.util.Collection;
+//import java.util.Set;
+//import java.util.zip.DataFormatException;
+//import java.util.zip.Deflater;
+//import java.util.zip.Inflater;
+//
+///**
+// * SecurityMaster 缓存中 Set<String>（clientId 集合、表名集合）的紧凑二进制编码
+// * <p>
+// * 格式：[1 字节格式标记][varint 元素个数][varint 长度 + UTF-8 字节]...；
+// * 超过阈值的集合用 Deflate(BEST_SPEED) 压缩，此时格式为 [标记][varint 原始长度][压缩数据]。
+// * 元素排序后再编码，相邻的 clientId 前缀相同，压缩效果更好。
+// * 反序列化直接得到不可变 Set；首字节不是本格式标记时按旧的 JSON 格式兜底解析。
+// *
+// * @author liuhb
+// */
+//public class ClientIdSetRedisSerializer implements RedisSerializer<Set<String>> {
+//
+//    /**
+//     * 编码格式版本，格式变化时参与增量刷新指纹，强制重新加载旧数据
+//     */
+//    public static final int FORMAT_VERSION = 1;
+//
+//    private static final byte FORMAT_PLAIN = 0x01;
+//    private static final byte FORMAT_DEFLATE = 0x02;
+//
+//    /**
+//     * 旧数据（JSON）的兜底反序列化器
+//     */
+//    private final RedisSerializer<?> legacySerializer;
+//
+//    /**
+//     * 原始编码超过这么多字节才尝试压缩
+//     */
+//    private final int compressThreshold;
+//
+//    public ClientIdSetRedisSerializer(RedisSerializer<?> legacySerializer, int compressThreshold) {
+//        this.legacySerializer = legacySerializer;
+//        this.compressThreshold = compressThreshold;
+//    }
+//
+//    @Override
+//    public byte[] serialize(Set<String> value) throws SerializationException {
+//        if (value == null) {
+//            return null;
+//        }
+//        String[] sorted = value.toArray(new String[0]);
+//        for (String element : sorted) {
+//            if (element == null) {
+//                throw new SerializationException("SecurityMaster 集合中不能包含 null 元素");
+//            }
+//        }
+//        Arrays.sort(sorted);
+//
+//        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + sorted.length * 12);
+//        writeVarInt(out, sorted.length);
+//        for (String element : sorted) {
+//            byte[] bytes = element.getBytes(StandardCharsets.UTF_8);
+//            writeVarInt(out, bytes.length);
+//            out.write(bytes, 0, bytes.length);
+//        }
+//        byte[] payload = out.toByteArray();
+//
+//        if (payload.length >= compressThreshold) {
+//            byte[] compressed = deflate(payload);
+//            // 压缩后没有变小就存原始编码
+//            if (compressed.length + 5 < payload.length) {
+//                ByteArrayOutputStream result = new ByteArrayOutputStream(compressed.length + 6);
+//                result.write(FORMAT_DEFLATE);
+//                writeVarInt(result, payload.length);
+//                result.write(compressed, 0, compressed.length);
+//                return result.toByteArray();
+//            }
+//        }
+//        byte[] result = new byte[payload.length + 1];
+//        result[0] = FORMAT_PLAIN;
+//        System.arraycopy(payload, 0, result, 1, payload.length);
+//        return result;
+//    }
+//
+//    @Override
+//    @SuppressWarnings("unchecked")
+//    public Set<String> deserialize(byte[] bytes) throws SerializationException {
+//        if (bytes == null || bytes.length == 0) {
+//            return null;
+//        }
+//        if (bytes[0] == FORMAT_PLAIN) {
+//            return decode(ByteBuffer.wrap(bytes, 1, bytes.length - 1));
+//        }
+//        if (bytes[0] == FORMAT_DEFLATE) {
+//            ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+//            int rawLength = readVarInt(buffer);
+//            return decode(ByteBuffer.wrap(inflate(bytes, buffer.position(), rawLength)));
+//        }
+//        // 旧格式：JSON 序列化的 Set 会被反序列化成 ArrayList
+//        Object legacy = legacySerializer != null ? legacySerializer.deserialize(bytes) : null;
+//        if (legacy instanceof Collection) {
+//            return Set.copyOf((Collection<String>) legacy);
+//        }
+//        throw new SerializationException("无法识别的 SecurityMaster 集合编码，首字节=" + bytes[0]);
+//    }
+//
+//    private static Set<String> decode(ByteBuffer buffer) {
+//        int size = readVarInt(buffer);
+//        String[] elements = new String[size];
+//        byte[] array = buffer.array();
+//        for (int i = 0; i < size; i++) {
+//            int length = readVarInt(buffer);
+//            int offset = buffer.position();
+//            elements[i] = new String(array, offset, length, StandardCharsets.UTF_8);
+//            buffer.position(offset + length);
+//        }
+//        return Set.copyOf(Arrays.asList(elements));
+//    }
+//
+//    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+//        while ((value & ~0x7F) != 0) {
+//            out.write((value & 0x7F) | 0x80);
+//            value >>>= 7;
+//        }
+//        out.write(value);
+//    }
+//
+//    private static int readVarInt(ByteBuffer buffer) {
+//        int value = 0;
+//        int shift = 0;
+//        byte b;
+//        do {
+//            if (shift > 28) {
+//                throw new SerializationException("SecurityMaster 集合编码中的 varint 过长");
+//            }
+//            b = buffer.get();
+//            value |= (b & 0x7F) << shift;
+//            shift += 7;
+//        } while ((b & 0x80) != 0);
+//        return value;
+//    }
+//
+//    private static byte[] deflate(byte[] input) {
+//        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+//        try {
+//            deflater.setInput(input);
+//            deflater.finish();
+//            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 16);
+//            byte[] buffer = new byte[4096];
+//            while (!deflater.finished()) {
+//                int count = deflater.deflate(buffer);
+//                out.write(buffer, 0, count);
+//            }
+//            return out.toByteArray();
+//        } finally {
+//            deflater.end();
+//        }
+//    }
+//
+//    private static byte[] inflate(byte[] input, int offset, int rawLength) {
+//        Inflater inflater = new Inflater();
+//        try {
+//            inflater.setInput(input, offset, input.length - offset);
+//            byte[] result = new byte[rawLength];
+//            int total = 0;
+//            while (total < rawLength && !inflater.finished()) {
+//                int count = inflater.inflate(result, total, rawLength - total);
+//                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+//                    break;
+//                }
+//                total += count;
+//            }
+//            if (total != rawLength) {
+//                throw new SerializationException("SecurityMaster 集合解压后长度不符: " + total + " != " + rawLength);
+//            }
+//            return result;
+//        } catch (DataFormatException e) {
+//            throw new SerializationException("SecurityMaster 集合解压失败", e);
+//        } finally {
+//            inflater.end();
+//        }
+//    }
+//}
@@ -0,0 +1,108 @@
+//package cn.bochk.pap.server.business.service;
+//
+//import org.openjdk.jmh.annotations.Benchmark;
+//import org.openjdk.jmh.annotations.BenchmarkMode;
+//import org.openjdk.jmh.annotations.Fork;
+//import org.openjdk.jmh.annotations.Level;
+//import org.openjdk.jmh.annotations.Measurement;
+//import org.openjdk.jmh.annotations.Mode;
+//import org.openjdk.jmh.annotations.OutputTimeUnit;
+//import org.openjdk.jmh.annotations.Param;
+//import org.openjdk.jmh.annotations.Scope;
+//import org.openjdk.jmh.annotations.Setup;
+//import org.openjdk.jmh.annotations.State;
+//import org.openjdk.jmh.annotations.Warmup;
+//
+//import java.util.ArrayList;
+//import java.util.List;
+//import java.util.Map;
+//import java.util.Random;
+//import java.util.Set;
+//import java.util.concurrent.TimeUnit;
+//
+///**
+// * SecurityMaster 缓存构建阶段（initCache 的 JVM 内部分）的 JMH 基准测试
+// * 放在 JMH 模块的 src/jmh/java 下，与被测类同包；用合成的查询结果行驱动和线上完全相同的代码：
+// * TableLoadResult.accept（逐行归并 + clientId 字典）、freezeClientIdSets、buildReverseIndex，不依赖数据库和 Redis
+// * <p>
+// * 运行：java -jar security-master-benchmarks.jar SecurityMasterBuildBenchmark -prof gc
+// * 一次操作 = 处理完 rows 行，ops/s × rows 即每秒处理的行数；-prof gc 的 gc.alloc.rate.norm 为每次操作分配的字节数
+// *
+// * @author liuhb
+// */
+//@BenchmarkMode(Mode.Throughput)
+//@OutputTimeUnit(TimeUnit.SECONDS)
+//@State(Scope.Benchmark)
+//@Warmup(iterations = 3)
+//@Measurement(iterations = 5)
+//@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+//public class SecurityMasterBuildBenchmark {
+//
+//    /**
+//     * 合成的查询结果行数
+//     */
+//    @Param({"10000", "100000", "1000000", "5000000"})
+//    private int rows;
+//
+//    /**
+//     * 平均每个产品代码关联的 clientId 数
+//     */
+//    @Param({"3"})
+//    private int clientsPerProduct;
+//
+//    /**
+//     * 平均每个 clientId 关联的行数
+//     */
+//    @Param({"20"})
+//    private int rowsPerClient;
+//
+//    private List<Map<String, Object>> resultRows;
+//
+//    private Map<String, Set<String>> frozenDataMap;
+//
+//    @Setup(Level.Trial)
+//    public void setUp() {
+//        Random random = new Random(42);
+//        int products = Math.max(1, rows / clientsPerProduct);
+//        int clients = Math.max(1, rows / rowsPerClient);
+//        resultRows = new ArrayList<>(rows);
+//        for (int i = 0; i < rows; i++) {
+//            // 每行都是新的 String 实例，和 JDBC 每行新建字符串的行为一致
+//            String matchFieldValue = String.format("XS%010d", random.nextInt(products));
+//            String clientId = String.format("C%09d", random.nextInt(clients));
+//            resultRows.add(Map.of("match_field_value", matchFieldValue, "CLIENT_ID", clientId));
+//        }
+//        frozenDataMap = streamRowsAndFreeze();
+//    }
+//
+//    /**
+//     * 只做逐行归并（对应 querySecurityMasterTable 的 ResultHandler）
+//     */
+//    @Benchmark
+//    public Map<String, Set<String>> streamRows() {
+//        SecurityMasterCacheService.TableLoadResult result = new SecurityMasterCacheService.TableLoadResult();
+//        ClientIdDictionary clientIdDictionary = new ClientIdDictionary();
+//        for (Map<String, Object> row : resultRows) {
+//            result.accept(row, clientIdDictionary);
+//        }
+//        return result.dataMap;
+//    }
+//
+//    /**
+//     * 逐行归并后换成不可变 Set，即写入 Redis 前的完整 JVM 内构建
+//     */
+//    @Benchmark
+//    public Map<String, Set<String>> streamRowsAndFreeze() {
+//        Map<String, Set<String>> dataMap = streamRows();
+//        SecurityMasterCacheService.freezeClientIdSets(dataMap);
+//        return dataMap;
+//    }
+//
+//    /**
+//     * 由 matchFieldValue → Set<clientId> 生成反向索引
+//     */
+//    @Benchmark
+//    public Map<String, Set<String>> buildReverseIndex() {
+//        return SecurityMasterCacheService.buildReverseIndex(frozenDataMap);
+//    }
+//}
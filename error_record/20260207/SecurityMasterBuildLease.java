@@ -0,0 +1,166 @@
+//package cn.bochk.pap.server.business.service;
+//
+//import jakarta.annotation.PreDestroy;
+//import jakarta.annotation.Resource;
+//import lombok.extern.slf4j.Slf4j;
+//import org.springframework.data.redis.core.RedisTemplate;
+//import org.springframework.data.redis.core.script.DefaultRedisScript;
+//import org.springframework.data.redis.core.script.RedisScript;
+//import org.springframework.stereotype.Component;
+//
+//import java.lang.management.ManagementFactory;
+//import java.util.Collections;
+//import java.util.UUID;
+//import java.util.concurrent.Executors;
+//import java.util.concurrent.ScheduledExecutorService;
+//import java.util.concurrent.ScheduledFuture;
+//import java.util.concurrent.TimeUnit;
+//
+///**
+// * SecurityMaster 缓存重建租约
+// * 多节点部署时只允许一个节点执行 initCache 的全量查询和写 Redis，其他节点等待新一代数据就绪后直接读取
+// * 租约用 SET NX PX 实现，持有期间看门狗定时续期；释放和续期都先比较 owner，避免误删别人的租约
+// * 租约的值为 用途|owner，等待方据此区分：重建会切换代数，值得等待；日切预加载不切换代数，等待没有意义
+// *
+// * @author liuhb
+// */
+//@Component
+//@Slf4j
+//public class SecurityMasterBuildLease {
+//
+//    public static final String REDIS_KEY_BUILD_LEASE = "br_security_master:build_lease";
+//
+//    /**
+//     * 租约用途：重建或日切切换，完成后当前代数会变化
+//     */
+//    public static final String PURPOSE_BUILD = "build";
+//    /**
+//     * 租约用途：日切预加载，只构建下一业务日期的代数，不切换当前代数
+//     */
+//    public static final String PURPOSE_PRELOAD = "preload";
+//
+//    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+//            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+//            Long.class);
+//
+//    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+//            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+//            Long.class);
+//
+//    @Resource
+//    private RedisTemplate<String, Object> redisTemplate;
+//
+//    @Resource
+//    private SecurityMasterCacheProperties properties;
+//
+//    /**
+//     * 本节点的租约持有者标识：进程名 + 随机串
+//     */
+//    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID();
+//
+//    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+//        Thread thread = new Thread(r, "security-master-lease-watchdog");
+//        thread.setDaemon(true);
+//        return thread;
+//    });
+//
+//    private volatile ScheduledFuture<?> renewTask;
+//
+//    /**
+//     * 本节点当前持有的租约值（用途|owner），释放和续期时比较
+//     */
+//    private volatile String leaseValue;
+//
+//    /**
+//     * 以重建用途获取租约
+//     *
+//     * @return 是否成为本轮的构建节点
+//     */
+//    public boolean tryAcquire() {
+//        return tryAcquire(PURPOSE_BUILD);
+//    }
+//
+//    /**
+//     * 尝试获取租约，成功后启动看门狗续期
+//     *
+//     * @param purpose 租约用途，PURPOSE_BUILD / PURPOSE_PRELOAD
+//     * @return 是否成为本轮的构建节点
+//     */
+//    public boolean tryAcquire(String purpose) {
+//        long ttlMillis = properties.getBuildLeaseTtl().toMillis();
+//        String value = purpose + "|" + owner;
+//        Boolean acquired = redisTemplate.opsForValue()
+//                .setIfAbsent(REDIS_KEY_BUILD_LEASE, value, ttlMillis, TimeUnit.MILLISECONDS);
+//        if (!Boolean.TRUE.equals(acquired)) {
+//            return false;
+//        }
+//        leaseValue = value;
+//        long period = Math.max(ttlMillis / 3, 1000L);
+//        renewTask = watchdog.scheduleAtFixedRate(() -> renew(value, ttlMillis), period, period, TimeUnit.MILLISECONDS);
+//        log.info("获取 SecurityMaster 重建租约成功: purpose={}, owner={}", purpose, owner);
+//        return true;
+//    }
+//
+//    /**
+//     * 释放租约（只会删除自己持有的租约）
+//     */
+//    public void release() {
+//        ScheduledFuture<?> task = renewTask;
+//        if (task != null) {
+//            task.cancel(false);
+//            renewTask = null;
+//        }
+//        String value = leaseValue;
+//        leaseValue = null;
+//        if (value == null) {
+//            return;
+//        }
+//        try {
+//            Long released = redisTemplate.execute(RELEASE_SCRIPT,
+//                    Collections.singletonList(REDIS_KEY_BUILD_LEASE), value);
+//            if (released == null || released == 0L) {
+//                log.warn("SecurityMaster 重建租约已过期或被其他节点持有，无需释放: owner={}", owner);
+//            }
+//        } catch (Exception e) {
+//            log.warn("释放 SecurityMaster 重建租约失败，等待其自然过期: {}", e.getMessage());
+//        }
+//    }
+//
+//    /**
+//     * 当前是否有节点（包括自己）持有租约
+//     */
+//    public boolean isHeldByAnyone() {
+//        return Boolean.TRUE.equals(redisTemplate.hasKey(REDIS_KEY_BUILD_LEASE));
+//    }
+//
+//    /**
+//     * 当前租约的用途；没有节点持有时返回 null
+//     */
+//    public String getHolderPurpose() {
+//        Object value = redisTemplate.opsForValue().get(REDIS_KEY_BUILD_LEASE);
+//        if (value == null) {
+//            return null;
+//        }
+//        String text = value.toString();
+//        int separator = text.indexOf('|');
+//        // 没有用途前缀的是旧版本节点写入的租约，当作重建
+//        return separator > 0 ? text.substring(0, separator) : PURPOSE_BUILD;
+//    }
+//
+//    @PreDestroy
+//    public void destroy() {
+//        watchdog.shutdownNow();
+//    }
+//
+//    private void renew(String value, long ttlMillis) {
+//        try {
+//            Long renewed = redisTemplate.execute(RENEW_SCRIPT,
+//                    Collections.singletonList(REDIS_KEY_BUILD_LEASE), value, ttlMillis);
+//            if (renewed == null || renewed == 0L) {
+//                log.warn("SecurityMaster 重建租约续期失败，租约可能已丢失: owner={}", owner);
+//            }
+//        } catch (Exception e) {
+//            log.warn("SecurityMaster 重建租约续期异常: {}", e.getMessage());
+//        }
+//    }
+//}
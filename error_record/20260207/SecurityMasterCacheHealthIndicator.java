@@ -0,0 +1,56 @@
+//package cn.bochk.pap.server.business.service;
+//
+//import jakarta.annotation.Resource;
+//import org.springframework.boot.actuate.health.Health;
+//import org.springframework.boot.actuate.health.HealthIndicator;
+//import org.springframework.boot.actuate.health.Status;
+//import org.springframework.stereotype.Component;
+//
+///**
+// * SecurityMaster 缓存就绪状态
+// * 对应 /actuator/health 中的 securityMasterCache，可加入 readiness 分组：
+// * management.endpoint.health.group.readiness.include=readinessState,securityMasterCache
+// * <p>
+// * Redis 中有可用代数即为 UP（预热期间读上一代数据）；预热中且没有可用代数为 OUT_OF_SERVICE；
+// * 预热结束后仍没有可用代数为 DOWN
+// * Redis 熔断期间不访问 Redis：本地副本可用时为 UP（降级），否则为 DOWN
+// *
+// * @author liuhb
+// */
+//@Component
+//public class SecurityMasterCacheHealthIndicator implements HealthIndicator {
+//
+//    @Resource
+//    private SecurityMasterCacheService securityMasterCacheService;
+//
+//    @Resource
+//    private SecurityMasterRedisCircuitBreaker circuitBreaker;
+//
+//    @Resource
+//    private SecurityMasterLocalCopy localCopy;
+//
+//    @Override
+//    public Health health() {
+//        if (circuitBreaker.isOpen()) {
+//            return (localCopy.isUsable() ? Health.up() : Health.down())
+//                    .withDetail("redisCircuitOpen", true)
+//                    .withDetail("localCopyGeneration", localCopy.getGeneration())
+//                    .withDetail("localCopyConfirmedAt", localCopy.getConfirmedAt())
+//                    .build();
+//        }
+//        boolean warmUpComplete = securityMasterCacheService.isWarmUpComplete();
+//        long generation = securityMasterCacheService.getAvailableGeneration();
+//        Health.Builder builder;
+//        if (generation > 0) {
+//            builder = Health.up();
+//        } else if (!warmUpComplete) {
+//            builder = Health.status(Status.OUT_OF_SERVICE);
+//        } else {
+//            builder = Health.down();
+//        }
+//        return builder
+//                .withDetail("generation", generation)
+//                .withDetail("warmUpComplete", warmUpComplete)
+//                .build();
+//    }
+//}
@@ -0,0 +1,158 @@
+//package cn.bochk.pap.server.business.service;
+//
+//import io.micrometer.core.instrument.Counter;
+//import io.micrometer.core.instrument.Gauge;
+//import io.micrometer.core.instrument.MeterRegistry;
+//import io.micrometer.core.instrument.Timer;
+//import jakarta.annotation.PostConstruct;
+//import jakarta.annotation.Resource;
+//import org.springframework.stereotype.Component;
+//
+//import java.util.Map;
+//import java.util.concurrent.ConcurrentHashMap;
+//import java.util.concurrent.TimeUnit;
+//import java.util.concurrent.atomic.AtomicLong;
+//
+///**
+// * SecurityMaster 缓存的 Micrometer 指标
+// * <ul>
+// *     <li>security_master.lookup：按 asset_type / result 统计的查询次数（near_hit、redis_hit、miss、negative_hit、bloom_reject，
+// *     以及 Redis 熔断 / 访问失败时由本地副本应答的 degraded，按调用计）</li>
+// *     <li>security_master.lookup.latency：按 operation / asset_type 统计的查询耗时</li>
+// *     <li>security_master.table_name.lookup：按 asset_type / result 统计的表名查询次数（near_hit、redis_hit、miss）</li>
+// *     <li>security_master.reload.triggered：查询时因没有可用代数而触发的重新加载次数</li>
+// *     <li>security_master.reload.duration：每次重建耗时，outcome=success / failure</li>
+// *     <li>security_master.reload.table.rows / rows_per_second：最近一次加载每张表的行数和吞吐</li>
+// *     <li>security_master.generation / generation.age：当前代数和本节点切换到该代数后经过的秒数</li>
+// *     <li>security_master.redis.circuit_open：Redis 熔断是否打开（1 / 0）</li>
+// *     <li>security_master.local_copy.staleness：本地副本最后一次确认为最新后经过的秒数</li>
+// * </ul>
+// * 查询路径上的 Counter / Timer 按标签组合缓存，只在第一次出现时注册，之后每次查询只是一次 map 查找
+// *
+// * @author liuhb
+// */
+//@Component
+//public class SecurityMasterCacheMetrics {
+//
+//    static final String RESULT_NEAR_HIT = "near_hit";
+//    static final String RESULT_REDIS_HIT = "redis_hit";
+//    static final String RESULT_MISS = "miss";
+//    static final String RESULT_NEGATIVE_HIT = "negative_hit";
+//    static final String RESULT_BLOOM_REJECT = "bloom_reject";
+//    static final String RESULT_DEGRADED = "degraded";
+//
+//    @Resource
+//    private MeterRegistry meterRegistry;
+//
+//    @Resource
+//    private SecurityMasterNearCache nearCache;
+//
+//    @Resource
+//    private SecurityMasterRedisCircuitBreaker circuitBreaker;
+//
+//    @Resource
+//    private SecurityMasterLocalCopy localCopy;
+//
+//    /**
+//     * 每张表（表名 + 资产类型）最近一次加载的行数和每秒行数，由 Gauge 读取
+//     */
+//    private final Map<String, AtomicLong> tableRows = new ConcurrentHashMap<>();
+//    private final Map<String, AtomicLong> tableRowsPerSecond = new ConcurrentHashMap<>();
+//
+//    /**
+//     * 已注册的计数器和计时器，key 为标签值拼接
+//     */
+//    private final Map<String, Counter> lookupCounters = new ConcurrentHashMap<>();
+//    private final Map<String, Counter> tableNameLookupCounters = new ConcurrentHashMap<>();
+//    private final Map<String, Timer> lookupTimers = new ConcurrentHashMap<>();
+//    private final Map<String, Counter> reloadTriggeredCounters = new ConcurrentHashMap<>();
+//    private final Map<Boolean, Timer> reloadTimers = new ConcurrentHashMap<>();
+//
+//    @PostConstruct
+//    public void init() {
+//        Gauge.builder("security_master.generation", nearCache, SecurityMasterNearCache::currentGeneration)
+//                .description("当前 SecurityMaster 缓存代数")
+//                .register(meterRegistry);
+//        Gauge.builder("security_master.generation.age", nearCache, cache -> {
+//                    long changedAt = cache.getGenerationChangedAt();
+//                    return changedAt > 0 ? (System.currentTimeMillis() - changedAt) / 1000.0 : Double.NaN;
+//                })
+//                .description("本节点切换到当前代数后经过的时间")
+//                .baseUnit("seconds")
+//                .register(meterRegistry);
+//        Gauge.builder("security_master.redis.circuit_open", circuitBreaker, breaker -> breaker.isOpen() ? 1 : 0)
+//                .description("SecurityMaster 访问 Redis 的熔断是否打开")
+//                .register(meterRegistry);
+//        Gauge.builder("security_master.local_copy.staleness", localCopy, copy -> {
+//                    long confirmedAt = copy.getConfirmedAt();
+//                    return confirmedAt > 0 ? (System.currentTimeMillis() - confirmedAt) / 1000.0 : Double.NaN;
+//                })
+//                .description("本地副本最后一次确认为最新后经过的时间")
+//                .baseUnit("seconds")
+//                .register(meterRegistry);
+//    }
+//
+//    void recordLookup(String assetType, String result) {
+//        recordLookup(assetType, result, 1);
+//    }
+//
+//    void recordLookup(String assetType, String result, int count) {
+//        if (count <= 0) {
+//            return;
+//        }
+//        lookupCounter(lookupCounters, "security_master.lookup", assetType, result).increment(count);
+//    }
+//
+//    void recordTableNameLookup(String assetType, String result) {
+//        lookupCounter(tableNameLookupCounters, "security_master.table_name.lookup", assetType, result).increment();
+//    }
+//
+//    void recordLookupLatency(String operation, String assetType, long elapsedNanos) {
+//        lookupTimers.computeIfAbsent(operation + "|" + assetType, k -> Timer.builder("security_master.lookup.latency")
+//                        .tag("operation", operation)
+//                        .tag("asset_type", String.valueOf(assetType))
+//                        .register(meterRegistry))
+//                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+//    }
+//
+//    void recordReloadTriggered(String assetType) {
+//        reloadTriggeredCounters.computeIfAbsent(String.valueOf(assetType), k -> Counter.builder("security_master.reload.triggered")
+//                        .tag("asset_type", k)
+//                        .register(meterRegistry))
+//                .increment();
+//    }
+//
+//    void recordReload(long elapsedNanos, boolean success) {
+//        reloadTimers.computeIfAbsent(success, k -> Timer.builder("security_master.reload.duration")
+//                        .tag("outcome", k ? "success" : "failure")
+//                        .register(meterRegistry))
+//                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+//    }
+//
+//    private Counter lookupCounter(Map<String, Counter> counters, String name, String assetType, String result) {
+//        return counters.computeIfAbsent(assetType + "|" + result, k -> Counter.builder(name)
+//                .tag("asset_type", String.valueOf(assetType))
+//                .tag("result", result)
+//                .register(meterRegistry));
+//    }
+//
+//    void recordTableLoad(String tableName, String assetType, int rows, long elapsedMillis) {
+//        String key = tableName + "|" + assetType;
+//        tableGauge(tableRows, "security_master.reload.table.rows", key, tableName, assetType)
+//                .set(rows);
+//        tableGauge(tableRowsPerSecond, "security_master.reload.table.rows_per_second", key, tableName, assetType)
+//                .set(elapsedMillis > 0 ? rows * 1000L / elapsedMillis : rows);
+//    }
+//
+//    private AtomicLong tableGauge(Map<String, AtomicLong> gauges, String name, String key,
+//                                  String tableName, String assetType) {
+//        return gauges.computeIfAbsent(key, k -> {
+//            AtomicLong value = new AtomicLong();
+//            Gauge.builder(name, value, AtomicLong::get)
+//                    .tag("table", tableName)
+//                    .tag("asset_type", String.valueOf(assetType))
+//                    .register(meterRegistry);
+//            return value;
+//        });
+//    }
+//}
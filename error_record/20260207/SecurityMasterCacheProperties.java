@@ -0,0 +1,216 @@
+//package cn.bochk.pap.server.business.service;
+//
+//import lombok.Data;
+//import org.springframework.boot.context.properties.ConfigurationProperties;
+//import org.springframework.stereotype.Component;
+//
+//import java.nio.file.Paths;
+//import java.time.Duration;
+//
+///**
+// * SecurityMaster 缓存配置
+// * 对应 application.yaml 中的 pap.security-master.cache.*
+// *
+// * @author liuhb
+// */
+//@Component
+//@ConfigurationProperties(prefix = "pap.security-master.cache")
+//@Data
+//public class SecurityMasterCacheProperties {
+//
+//    /**
+//     * 本地近端缓存（L1）最大条目数
+//     */
+//    private long nearCacheMaximumSize = 100_000;
+//
+//    /**
+//     * 本地近端缓存写入后的最长存活时间，防止错过失效广播时无限期读到旧数据
+//     */
+//    private Duration nearCacheExpireAfterWrite = Duration.ofMinutes(10);
+//
+//    /**
+//     * 重建租约的有效期，持有期间由看门狗按 1/3 周期续期；节点宕机后最多这么久释放
+//     */
+//    private Duration buildLeaseTtl = Duration.ofMinutes(2);
+//
+//    /**
+//     * 未抢到租约的节点等待“新一代数据已就绪”的最长时间
+//     */
+//    private Duration buildWaitTimeout = Duration.ofMinutes(10);
+//
+//    /**
+//     * 启动预热期间 Redis 中没有任何可用代数时，查询线程等待预热完成的最长时间；超时后返回空结果
+//     */
+//    private Duration warmUpWaitTimeout = Duration.ofSeconds(30);
+//
+//    /**
+//     * 是否在缓存过期前由后台线程提前重建，避免在请求线程里遇到整体过期
+//     */
+//    private boolean refreshAheadEnabled = true;
+//
+//    /**
+//     * 当前代数已过去 TTL 的多少比例时触发提前重建
+//     */
+//    private double refreshAheadRatio = 0.8;
+//
+//    /**
+//     * 后台检查当前代数剩余 TTL 的间隔
+//     */
+//    private Duration refreshAheadCheckInterval = Duration.ofMinutes(1);
+//
+//    /**
+//     * 数据 key 在基础 TTL 之上随机增加的最长时间，各 key 不会在同一时刻一起过期
+//     */
+//    private Duration cacheTtlJitter = Duration.ofMinutes(5);
+//
+//    /**
+//     * 是否在下一业务日期的 TABLE_SWITCH_LOG 生效后提前构建该日期的代数，日切时只切换指针
+//     */
+//    private boolean rolloverPreloadEnabled = true;
+//
+//    /**
+//     * 检查业务日期切换 / 下一业务日期数据是否就绪的间隔
+//     */
+//    private Duration rolloverCheckInterval = Duration.ofMinutes(1);
+//
+//    /**
+//     * 是否把大资产类型的数据 hash 按产品代码的哈希拆成多个桶 key，分散到 Redis Cluster 的不同 slot
+//     */
+//    private boolean dataShardingEnabled = false;
+//
+//    /**
+//     * 字段数超过该值的资产类型才拆分
+//     */
+//    private int dataShardThreshold = 10_000;
+//
+//    /**
+//     * 每个桶的目标字段数；不超过 Redis 的 hash-max-listpack-entries 时桶可以使用紧凑编码
+//     */
+//    private int dataBucketSize = 128;
+//
+//    /**
+//     * 切换到新代数后，旧代数数据保留的宽限期
+//     */
+//    private Duration generationRetireGrace = Duration.ofMinutes(5);
+//
+//    /**
+//     * SCAN 每次迭代建议返回的 key 数量
+//     */
+//    private int redisScanCount = 500;
+//
+//    /**
+//     * 写入大 hash 时每条 HSET 命令携带的字段数
+//     */
+//    private int redisHsetChunkSize = 1000;
+//
+//    /**
+//     * 批量查询时每条 HMGET 命令携带的字段数
+//     */
+//    private int bulkLookupChunkSize = 500;
+//
+//    /**
+//     * 加载时并发查询 BR_SECURITY_MASTER_* 表的线程数，即一次加载最多占用的 DB 连接数
+//     */
+//    private int loadParallelism = 4;
+//
+//    /**
+//     * 是否把落在同一张物理表上的多条配置合并为一次表扫描（每条配置的匹配字段和条件各自投影成一列）
+//     * 关闭时每条配置单独查询一次
+//     */
+//    private boolean coalesceTableScans = true;
+//
+//    /**
+//     * 构建流水线中已读出并归并完成、等待写入 Redis 的 assetType 最大个数，队列满时读取阶段暂停
+//     */
+//    private int pipelineQueueCapacity = 2;
+//
+//    /**
+//     * 是否启用增量刷新：只重新加载物理表后缀或 ASSET_TYPE 配置发生变化的资产类型
+//     */
+//    private boolean incrementalRefreshEnabled = true;
+//
+//    /**
+//     * 增量刷新和本地快照中的数据最长可复用多久，超过后即使表没变也重新加载一次
+//     */
+//    private Duration incrementalMaxReuseAge = Duration.ofHours(24);
+//
+//    /**
+//     * 每条 UNLINK 命令最多删除的 key 数量
+//     */
+//    private int redisDeleteChunkSize = 500;
+//
+//    /**
+//     * 每个资产类型布隆过滤器的期望误判率；误判只会多查一次 Redis，不会漏掉存在的 productCode
+//     */
+//    private double bloomFilterFpp = 0.01;
+//
+//    /**
+//     * 查不到的 productCode 在本地负缓存中保留的时间
+//     */
+//    private Duration negativeCacheExpireAfterWrite = Duration.ofSeconds(30);
+//
+//    /**
+//     * 本地负缓存最大条目数，单独计数，大量错误代码不会把近端缓存里的热点挤出去
+//     */
+//    private long negativeCacheMaximumSize = 50_000;
+//
+//    /**
+//     * 是否在本地磁盘保存加载结果快照，重启后业务日期和表后缀不变时直接从快照恢复
+//     */
+//    private boolean snapshotEnabled = true;
+//
+//    /**
+//     * 本地快照目录
+//     */
+//    private String snapshotDirectory = Paths.get(System.getProperty("java.io.tmpdir"), "pap-security-master").toString();
+//
+//    /**
+//     * JFR 查询事件的抽样间隔：每 N 次查询记录一次 SecurityMasterLookupEvent，1 为全部记录，0 为不记录
+//     * 只有在 JFR 记录进行中时才生效，重建阶段事件不抽样
+//     */
+//    private int jfrLookupSampleRate = 100;
+//
+//    /**
+//     * 查询的读节点策略，取值同 Lettuce ReadFrom：master（默认，全部走主节点）、replicaPreferred、replica、anyReplica、nearest 等
+//     * 只在 Sentinel / Cluster 部署下生效；构建、清理等写操作始终走主节点
+//     */
+//    private String readFrom = "master";
+//
+//    /**
+//     * 读副本时，代数切换后副本尚未同步到新代数（读不到该代数的映射 key）期间，重新检查副本的最小间隔；
+//     * 检查通过前查询仍走主节点
+//     */
+//    private Duration replicaGenerationCheckInterval = Duration.ofMillis(200);
+//
+//    /**
+//     * 是否对查询访问 Redis 开启熔断：连续失败达到阈值后不再访问 Redis，改用本地副本，后台探测恢复
+//     */
+//    private boolean circuitBreakerEnabled = true;
+//
+//    /**
+//     * 熔断打开前允许的连续 Redis 访问失败次数
+//     */
+//    private int circuitBreakerFailureThreshold = 5;
+//
+//    /**
+//     * 熔断打开后探测 Redis 是否恢复（PING）的间隔
+//     */
+//    private Duration circuitBreakerProbeInterval = Duration.ofSeconds(5);
+//
+//    /**
+//     * 是否在本 JVM 内保存当前代数的完整副本，作为 Redis 熔断期间的降级数据源
+//     * 副本包含全部资产类型的正向和反向索引，会占用与一次完整构建相当的堆内存，默认关闭，按 Pod 堆大小评估后再开启
+//     */
+//    private boolean localCopyEnabled = false;
+//
+//    /**
+//     * 检查并刷新本地副本的间隔
+//     */
+//    private Duration localCopyRefreshInterval = Duration.ofMinutes(1);
+//
+//    /**
+//     * 本地副本最后一次确认为最新之后，还允许用于降级查询的最长时间；超过后查询快速失败
+//     */
+//    private Duration localCopyMaxStaleness = Duration.ofHours(2);
+//
+//}
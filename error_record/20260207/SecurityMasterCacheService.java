@@ -7,16 +7,50 @@
 //import cn.bochk.pap.server.business.mapper.TableSwitchLogMapper;
 //import com.alibaba.excel.util.StringUtils;
 //import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+//import com.google.common.hash.BloomFilter;
+//import com.google.common.hash.Funnel;
+//import com.google.common.hash.Funnels;
 //import jakarta.annotation.PostConstruct;
+//import jakarta.annotation.PreDestroy;
 //import jakarta.annotation.Resource;
 //import lombok.extern.slf4j.Slf4j;
 //import org.springframework.context.annotation.Lazy;
+//import org.springframework.dao.DataAccessException;
+//import org.springframework.data.redis.RedisConnectionFailureException;
+//import org.springframework.data.redis.core.HashOperations;
+//import org.springframework.data.redis.core.RedisCallback;
 //import org.springframework.data.redis.core.RedisTemplate;
+//import org.springframework.data.redis.serializer.RedisSerializer;
 //import org.springframework.stereotype.Service;
 //import org.springframework.util.CollectionUtils;
-//
+//import org.springframework.util.DigestUtils;
+//
+//import java.io.ByteArrayInputStream;
+//import java.io.ByteArrayOutputStream;
+//import java.io.IOException;
+//import java.io.UncheckedIOException;
+//import java.nio.charset.StandardCharsets;
+//import java.text.SimpleDateFormat;
+//import java.time.Duration;
 //import java.util.*;
+//import java.util.concurrent.ArrayBlockingQueue;
+//import java.util.concurrent.BlockingQueue;
+//import java.util.concurrent.Callable;
+//import java.util.concurrent.CompletableFuture;
+//import java.util.concurrent.ExecutionException;
+//import java.util.concurrent.ExecutorCompletionService;
+//import java.util.concurrent.ExecutorService;
+//import java.util.concurrent.Executors;
+//import java.util.concurrent.Future;
+//import java.util.concurrent.ScheduledExecutorService;
+//import java.util.concurrent.ThreadFactory;
 //import java.util.concurrent.TimeUnit;
+//import java.util.concurrent.ThreadLocalRandom;
+//import java.util.concurrent.TimeoutException;
+//import java.util.concurrent.atomic.AtomicInteger;
+//import java.util.concurrent.locks.ReentrantLock;
+//import java.util.function.Predicate;
+//import java.util.function.Supplier;
 //import java.util.stream.Collectors;
 //
 ///**
@@ -30,9 +64,41 @@
 //@Lazy
 //public class SecurityMasterCacheService {
 //
+//    public static final String REDIS_KEY_PREFIX = "br_security_master:";
+//
+//    /**
+//     * 所有已分配代数的登记集合；每一代自己写了哪些 key 记录在 g{n}:keys 中，清理时不需要 KEYS 扫描
+//     */
+//    public static final String REDIS_KEY_GENERATIONS = "br_security_master:generations";
+//
+//    /**
+//     * 提前构建好、等待日切时切换的代数：hash，业务日期 yyyyMMdd → generation
+//     */
+//    public static final String REDIS_KEY_PENDING = "br_security_master:pending";
+//    /**
+//     * 预加载代数对应的 TABLE_SWITCH_LOG 指纹：hash，业务日期 yyyyMMdd → 指纹
+//     */
+//    public static final String REDIS_KEY_PENDING_FINGERPRINT = "br_security_master:pending_fingerprint";
+//
+//    /**
+//     * 旧版不带代数的 key，只在清理时使用
+//     */
 //    public static final String REDIS_KEY_MAPPING = "br_security_master:mapping";
 //    public static final String REDIS_KEY_PREFIX_DATA = "br_security_master:data:";
 //
+//    /**
+//     * 缓存数据过期时间（映射 key 使用基础 TTL，数据 key 在此基础上加随机抖动，保证映射先于数据过期）
+//     */
+//    private static final Duration CACHE_TTL = Duration.ofHours(1);
+//
+//    private static final String NEAR_CACHE_TABLE_NAME = "tableName";
+//    private static final String NEAR_CACHE_CLIENT_ID_SET = "clientIdSet";
+//    private static final String NEAR_CACHE_MATCH_FIELD_SET = "matchFieldSet";
+//    private static final String NEAR_CACHE_MANIFEST_ENTRY = "manifestEntry";
+//    private static final String NEAR_CACHE_BLOOM_FILTER = "bloomFilter";
+//
+//    private static final Funnel<CharSequence> MATCH_FIELD_FUNNEL = Funnels.stringFunnel(StandardCharsets.UTF_8);
+//
 //    @Resource
 //    private AssetTypeMapper assetTypeMapper;
 //
@@ -45,34 +111,450 @@
 //    @Resource
 //    private RedisTemplate<String, Object> redisTemplate;
 //
+//    /**
+//     * 数据 hash 和映射 hash 专用：value 为二进制编码的 Set<String>
+//     */
+//    @Resource
+//    private RedisTemplate<String, Set<String>> securityMasterSetRedisTemplate;
+//
+//    /**
+//     * 查询专用：按 readFrom 路由到副本；未开启读副本时与 securityMasterSetRedisTemplate 是同一个实例
+//     */
+//    @Resource
+//    private RedisTemplate<String, Set<String>> securityMasterReadRedisTemplate;
+//
+//    @Resource
+//    private ClientIdSetRedisSerializer clientIdSetRedisSerializer;
+//
 //    @Resource
 //    private BatchBusinessDateResultService batchBusinessDateResultService;
 //
+//    @Resource
+//    private SecurityMasterNearCache nearCache;
+//
+//    @Resource
+//    private SecurityMasterBuildLease buildLease;
+//
+//    @Resource
+//    private SecurityMasterCacheProperties properties;
+//
+//    @Resource
+//    private SecurityMasterRedisWriter redisWriter;
+//
+//    @Resource
+//    private SecurityMasterSnapshotStore snapshotStore;
+//
+//    @Resource
+//    private SecurityMasterCacheMetrics metrics;
+//
+//    @Resource
+//    private SecurityMasterRedisCircuitBreaker circuitBreaker;
+//
+//    @Resource
+//    private SecurityMasterLocalCopy localCopy;
 //
 //    /**
-//     * 从table_switch_log里面获取 <BR_SECURITY_MASTER_BND,BR_SECURITY_MASTER_BND_1> 的map
-//     * 改为从 ASSET_TYPE 表读取配置
+//     * 本节点内的重建互斥：同一 JVM 里多个线程同时 miss 时只走一次租约竞争
+//     */
+//    private final ReentrantLock buildLock = new ReentrantLock();
+//
+//    /**
+//     * 启动预热任务，完成（无论成功与否）后查询线程不再等待它
+//     */
+//    private volatile CompletableFuture<Void> warmUp = CompletableFuture.completedFuture(null);
+//
+//    /**
+//     * 已确认同步到副本的代数（副本上能读到该代数的映射 key），以及最近一次检查副本的时间
+//     */
+//    private volatile long replicaReadableGeneration;
+//    private volatile long replicaCheckedAt;
+//
+//    /**
+//     * 提前重建、日切预加载、本地副本刷新的后台线程，每个任务一个线程
+//     */
+//    private ScheduledExecutorService scheduler;
+//
+//    /**
+//     * 启动时先在后台线程预热缓存，再启动后台定时任务，均不阻塞 Spring 启动和首个请求线程
+//     * 预热期间 Redis 中还有上一代数据时直接读上一代；完全没有数据时查询最多等待 warmUpWaitTimeout
 //     */
 //    @PostConstruct
+//    public void init() {
+//        startWarmUp();
+//        startScheduler();
+//    }
+//
+//    private void startWarmUp() {
+//        ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+//            Thread thread = new Thread(r, "security-master-warmup");
+//            thread.setDaemon(true);
+//            return thread;
+//        });
+//        long startTime = System.currentTimeMillis();
+//        warmUp = CompletableFuture.runAsync(this::initCache, executor).whenComplete((result, e) -> {
+//            executor.shutdown();
+//            if (e != null) {
+//                log.error("SecurityMaster 缓存预热失败", e);
+//            } else {
+//                log.info("SecurityMaster 缓存预热结束，耗时 {} ms，当前代数={}",
+//                        System.currentTimeMillis() - startTime, nearCache.currentGeneration());
+//            }
+//        });
+//    }
+//
+//    /**
+//     * 启动后台定时任务：
+//     * 1. 提前重建：检查当前代数的剩余 TTL，过去 refreshAheadRatio 后提前重建
+//     * 2. 日切预加载：下一业务日期的 TABLE_SWITCH_LOG 生效后提前构建该日期的代数，业务日期切换时只切换指针
+//     * 3. 本地副本：当前代数变化后复制到本 JVM，作为 Redis 熔断期间的降级数据源
+//     * 所有节点都会检查，但构建仍由租约选出的一个节点完成
+//     * 前两个任务可能在 initCache 中构建或等待其他节点构建长达 buildWaitTimeout，
+//     * 线程数与任务数相同，一个任务阻塞时其他任务照常按间隔执行
+//     */
+//    private void startScheduler() {
+//        int taskCount = (properties.isRefreshAheadEnabled() ? 1 : 0)
+//                + (properties.isRolloverPreloadEnabled() ? 1 : 0)
+//                + (properties.isLocalCopyEnabled() ? 1 : 0);
+//        if (taskCount == 0) {
+//            return;
+//        }
+//        AtomicInteger threadIndex = new AtomicInteger();
+//        scheduler = Executors.newScheduledThreadPool(taskCount, r -> {
+//            Thread thread = new Thread(r, "security-master-scheduler-" + threadIndex.incrementAndGet());
+//            thread.setDaemon(true);
+//            return thread;
+//        });
+//        if (properties.isRefreshAheadEnabled()) {
+//            long intervalMillis = properties.getRefreshAheadCheckInterval().toMillis();
+//            scheduler.scheduleWithFixedDelay(this::refreshAheadIfNeeded,
+//                    intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+//        }
+//        if (properties.isRolloverPreloadEnabled()) {
+//            long intervalMillis = properties.getRolloverCheckInterval().toMillis();
+//            scheduler.scheduleWithFixedDelay(this::rolloverIfNeeded,
+//                    intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+//        }
+//        if (properties.isLocalCopyEnabled()) {
+//            long intervalMillis = properties.getLocalCopyRefreshInterval().toMillis();
+//            scheduler.scheduleWithFixedDelay(this::refreshLocalCopyIfNeeded,
+//                    0L, intervalMillis, TimeUnit.MILLISECONDS);
+//        }
+//    }
+//
+//    @PreDestroy
+//    public void stopScheduler() {
+//        if (scheduler != null) {
+//            scheduler.shutdownNow();
+//        }
+//    }
+//
+//    private void refreshAheadIfNeeded() {
+//        try {
+//            // 启动预热还没结束时由预热负责；Redis 熔断期间不重建
+//            if (!warmUp.isDone() || !circuitBreaker.allowRequest()) {
+//                return;
+//            }
+//            long generation = nearCache.refreshGeneration();
+//            Long expire = generation > 0 ? redisTemplate.getExpire(mappingKey(generation), TimeUnit.MILLISECONDS) : null;
+//            // -2 表示 key 不存在（没有可用代数，同样在后台重建），-1 表示没有过期时间
+//            long remainingMillis = expire != null ? expire : -2L;
+//            long thresholdMillis = (long) (CACHE_TTL.toMillis() * (1 - properties.getRefreshAheadRatio()));
+//            if (remainingMillis == -1L || remainingMillis > thresholdMillis) {
+//                return;
+//            }
+//            log.info("SecurityMaster 缓存代数 {} 剩余 TTL {} ms，后台提前重建...", generation, remainingMillis);
+//            initCache();
+//        } catch (Exception e) {
+//            log.error("SecurityMaster 缓存提前重建失败", e);
+//        }
+//    }
+//
+//    /**
+//     * 日切检查：
+//     * 业务日期已切换而当前代数仍是旧日期的数据时，切换到提前构建好的代数（没有则在后台重新加载）；
+//     * 业务日期未切换时，若下一业务日期的 TABLE_SWITCH_LOG 已生效，则提前构建该日期的代数，只写入不切换
+//     */
+//    private void rolloverIfNeeded() {
+//        try {
+//            if (!warmUp.isDone() || !circuitBreaker.allowRequest()) {
+//                return;
+//            }
+//            String businessDate = formatBusinessDate(getBusinessDate());
+//            long generation = nearCache.refreshGeneration();
+//            String generationBusinessDate = generation > 0 ? getGenerationBusinessDate(generation) : null;
+//            if (generationBusinessDate != null && !generationBusinessDate.equals(businessDate)) {
+//                switchToBusinessDate(businessDate, generation);
+//                return;
+//            }
+//
+//            Date nextBusinessDate = getNextBusinessDate(getBusinessDate());
+//            if (nextBusinessDate == null) {
+//                return;
+//            }
+//            String next = formatBusinessDate(nextBusinessDate);
+//            String fingerprint = getTableSwitchFingerprint(nextBusinessDate);
+//            long pending = getPendingGeneration(next);
+//            if (isGenerationAlive(pending)) {
+//                if (fingerprint.equals(getPendingFingerprint(next))) {
+//                    // 等待日切期间保持预加载的代数不过期
+//                    List<String> keys = getRegisteredKeys(pending);
+//                    keys.add(registryKey(pending));
+//                    keys.add(REDIS_KEY_PENDING);
+//                    keys.add(REDIS_KEY_PENDING_FINGERPRINT);
+//                    redisWriter.expire(keys, CACHE_TTL);
+//                    return;
+//                }
+//                // 预加载后 TABLE_SWITCH_LOG 又有表生效或变更（例如只有部分表先生效），需要重新预加载
+//                log.info("下一业务日期 {} 的 TABLE_SWITCH_LOG 在预加载代数 {} 之后发生变化，重新预加载", next, pending);
+//            }
+//            preloadBusinessDate(nextBusinessDate, next, fingerprint);
+//        } catch (Exception e) {
+//            log.error("SecurityMaster 日切检查失败", e);
+//        }
+//    }
+//
+//    /**
+//     * 业务日期已切换：有提前构建好的代数时直接切换指针，否则在后台重新加载
+//     */
+//    private void switchToBusinessDate(String businessDate, long currentGeneration) {
+//        long pending = getPendingGeneration(businessDate);
+//        if (!isGenerationAlive(pending)) {
+//            log.info("业务日期已切换到 {}，没有可用的预加载代数，后台重新加载...", businessDate);
+//            initCache();
+//            return;
+//        }
+//        buildLock.lock();
+//        try {
+//            if (!buildLease.tryAcquire()) {
+//                // 其他节点正在构建或切换，下一轮再检查
+//                return;
+//            }
+//            try {
+//                if (nearCache.refreshGeneration() != currentGeneration) {
+//                    return;
+//                }
+//                nearCache.publishGeneration(pending);
+//                retireGeneration(currentGeneration);
+//                redisTemplate.opsForHash().delete(REDIS_KEY_PENDING, businessDate);
+//                redisTemplate.opsForHash().delete(REDIS_KEY_PENDING_FINGERPRINT, businessDate);
+//                snapshotStore.deleteBefore(businessDate);
+//                log.info("业务日期已切换到 {}，SecurityMaster 缓存已切换到预加载的代数 {}", businessDate, pending);
+//            } finally {
+//                buildLease.release();
+//            }
+//        } finally {
+//            buildLock.unlock();
+//        }
+//    }
+//
+//    /**
+//     * 提前构建下一业务日期的代数（不切换当前指针），构建完成后连同 TABLE_SWITCH_LOG 指纹记录到 pending key，
+//     * 指纹不一致时重新构建并让旧的预加载代数过期
+//     */
+//    private void preloadBusinessDate(Date nextBusinessDate, String next, String fingerprint) {
+//        buildLock.lock();
+//        try {
+//            if (!buildLease.tryAcquire(SecurityMasterBuildLease.PURPOSE_PRELOAD)) {
+//                return;
+//            }
+//            try {
+//                long previous = getPendingGeneration(next);
+//                boolean previousAlive = isGenerationAlive(previous);
+//                if (previousAlive && fingerprint.equals(getPendingFingerprint(next))) {
+//                    return;
+//                }
+//                log.info("下一业务日期 {} 的 TABLE_SWITCH_LOG 已生效，开始预加载...", next);
+//                long pending = buildCache(nextBusinessDate, false);
+//                if (pending > 0) {
+//                    redisTemplate.opsForHash().put(REDIS_KEY_PENDING, next, pending);
+//                    redisTemplate.opsForHash().put(REDIS_KEY_PENDING_FINGERPRINT, next, fingerprint);
+//                    redisTemplate.expire(REDIS_KEY_PENDING, CACHE_TTL);
+//                    redisTemplate.expire(REDIS_KEY_PENDING_FINGERPRINT, CACHE_TTL);
+//                    log.info("业务日期 {} 的 SecurityMaster 缓存已预加载为代数 {}，等待日切", next, pending);
+//                    if (previousAlive) {
+//                        retireGeneration(previous);
+//                    }
+//                }
+//            } finally {
+//                buildLease.release();
+//            }
+//        } finally {
+//            buildLock.unlock();
+//        }
+//    }
+//
+//    /**
+//     * 查询 TABLE_SWITCH_LOG 中已生效的、晚于当前业务日期的最近一个业务日期
+//     */
+//    private Date getNextBusinessDate(Date businessDate) {
+//        LambdaQueryWrapper<TableSwitchLogDo> wrapper = new LambdaQueryWrapper<>();
+//        wrapper.eq(TableSwitchLogDo::getIsValid, "Y");
+//        wrapper.gt(TableSwitchLogDo::getBusinessDate, businessDate);
+//        List<TableSwitchLogDo> tableSwitchLogDos = tableSwitchLogMapper.selectList(wrapper);
+//        if (CollectionUtils.isEmpty(tableSwitchLogDos)) {
+//            return null;
+//        }
+//        return tableSwitchLogDos.stream()
+//                .map(TableSwitchLogDo::getBusinessDate)
+//                .filter(Objects::nonNull)
+//                .min(Comparator.naturalOrder())
+//                .orElse(null);
+//    }
+//
+//    private String getPendingFingerprint(String businessDate) {
+//        Object value = redisTemplate.opsForHash().get(REDIS_KEY_PENDING_FINGERPRINT, businessDate);
+//        return value != null ? value.toString() : null;
+//    }
+//
+//    /**
+//     * 指定业务日期已生效的 TABLE_SWITCH_LOG 的指纹（按表名排序），任意一张表生效或切换后缀都会改变指纹
+//     */
+//    private String getTableSwitchFingerprint(Date businessDate) {
+//        LinkedHashMap<String, String> tableNameMap = getStringStringLinkedHashMap(businessDate);
+//        String joined = tableNameMap == null ? "" : new TreeMap<>(tableNameMap).toString();
+//        return DigestUtils.md5DigestAsHex(joined.getBytes(StandardCharsets.UTF_8));
+//    }
+//
+//    private long getPendingGeneration(String businessDate) {
+//        Object value = redisTemplate.opsForHash().get(REDIS_KEY_PENDING, businessDate);
+//        return value != null ? Long.parseLong(value.toString()) : 0L;
+//    }
+//
+//    private String getGenerationBusinessDate(long generation) {
+//        Object value = redisTemplate.opsForValue().get(businessDateKey(generation));
+//        return value != null ? value.toString() : null;
+//    }
+//
+//    private static String formatBusinessDate(Date businessDate) {
+//        return new SimpleDateFormat("yyyyMMdd").format(businessDate);
+//    }
+//
+//    /**
+//     * 基础 TTL 加上 [0, cacheTtlJitter] 的随机抖动
+//     */
+//    private Duration jitteredTtl() {
+//        long jitterMillis = properties.getCacheTtlJitter().toMillis();
+//        return jitterMillis > 0 ? CACHE_TTL.plusMillis(ThreadLocalRandom.current().nextLong(jitterMillis + 1)) : CACHE_TTL;
+//    }
+//
+//    /**
+//     * 启动预热是否已结束
+//     */
+//    public boolean isWarmUpComplete() {
+//        return warmUp.isDone();
+//    }
+//
+//    /**
+//     * 当前可直接读取的代数，不触发重新加载；0 表示 Redis 中没有可用代数
+//     */
+//    public long getAvailableGeneration() {
+//        long generation = nearCache.currentGeneration();
+//        return isGenerationAlive(generation) ? generation : 0L;
+//    }
+//
+//
+//    /**
+//     * 加载 SecurityMaster 数据到 Redis
+//     * 集群内通过 Redis 租约选出唯一的构建节点，其他节点等待新一代数据就绪后直接读取，
+//     * 节点数增加时 DB 和 Redis 的重建压力保持不变
+//     */
 //    public void initCache() {
+//        long observedGeneration = nearCache.refreshGeneration();
+//        buildLock.lock();
+//        try {
+//            // 排队期间本节点的其他线程或其他节点已经完成了重建
+//            if (nearCache.currentGeneration() != observedGeneration) {
+//                return;
+//            }
+//            if (!buildLease.tryAcquire()) {
+//                if (SecurityMasterBuildLease.PURPOSE_PRELOAD.equals(buildLease.getHolderPurpose())) {
+//                    // 预加载不会切换当前代数，等下去只会等到超时，下一轮检查时再重建
+//                    log.info("其他节点正在预加载下一业务日期的 SecurityMaster 缓存，本次不等待，稍后重试");
+//                    return;
+//                }
+//                log.info("其他节点正在重建 SecurityMaster 缓存，等待新一代数据就绪...");
+//                if (!awaitOtherBuilder(observedGeneration)) {
+//                    log.warn("等待其他节点重建 SecurityMaster 缓存超时或失败，本次不再重复加载");
+//                }
+//                return;
+//            }
+//            try {
+//                // 拿到租约前可能刚好有节点完成重建并释放了租约
+//                if (nearCache.refreshGeneration() != observedGeneration) {
+//                    return;
+//                }
+//                long buildStartNanos = System.nanoTime();
+//                buildCache(getBusinessDate(), true);
+//                metrics.recordReload(System.nanoTime() - buildStartNanos,
+//                        nearCache.currentGeneration() != observedGeneration);
+//            } finally {
+//                buildLease.release();
+//            }
+//        } finally {
+//            buildLock.unlock();
+//        }
+//    }
+//
+//    /**
+//     * 等待持有租约的节点完成重建
+//     *
+//     * @return 新一代数据是否已就绪
+//     */
+//    private boolean awaitOtherBuilder(long observedGeneration) {
+//        long deadline = System.currentTimeMillis() + properties.getBuildWaitTimeout().toMillis();
+//        try {
+//            while (System.currentTimeMillis() < deadline) {
+//                if (nearCache.awaitGenerationChange(observedGeneration, 1000L)) {
+//                    return true;
+//                }
+//                // 租约已释放（或持有者宕机过期）但代数没变，说明那次重建失败了；
+//                // 租约转到了预加载手里，代数同样不会再变化
+//                String purpose = buildLease.getHolderPurpose();
+//                if (purpose == null || SecurityMasterBuildLease.PURPOSE_PRELOAD.equals(purpose)) {
+//                    return nearCache.refreshGeneration() != observedGeneration;
+//                }
+//            }
+//        } catch (InterruptedException e) {
+//            Thread.currentThread().interrupt();
+//        }
+//        return false;
+//    }
+//
+//    /**
+//     * 从table_switch_log里面获取 <BR_SECURITY_MASTER_BND,BR_SECURITY_MASTER_BND_1> 的map
+//     * 改为从 ASSET_TYPE 表读取配置
+//     *
+//     * @param businessDateValue 按哪个业务日期的 TABLE_SWITCH_LOG 构建
+//     * @param publish           构建完成后是否切换当前代数指针；日切预加载时为 false
+//     * @return 新构建的代数，失败时返回 0
+//     */
+//    private long buildCache(Date businessDateValue, boolean publish) {
 //        log.info("========== 开始加载 SecurityMaster 数据到 Redis ==========");
 //        long startTime = System.currentTimeMillis();
 //
 //        try {
 //            // 从table_switch_log 里获取数据map：<BR_SECURITY_MASTER_BND,BR_SECURITY_MASTER_BND_1>
-//            LinkedHashMap<String, String> collect = getStringStringLinkedHashMap();
+//            SecurityMasterRebuildPhaseEvent tableSwitchLogPhase =
+//                    SecurityMasterRebuildPhaseEvent.start(SecurityMasterRebuildPhaseEvent.TABLE_SWITCH_LOG);
+//            LinkedHashMap<String, String> collect = getStringStringLinkedHashMap(businessDateValue);
+//            tableSwitchLogPhase.count = collect != null ? collect.size() : 0;
+//            tableSwitchLogPhase.commit();
 //            if (collect == null) {
 //                log.error("get table_switch_log data is null");
-//                return;
+//                return 0L;
 //            }
 //
 //
 //            // 1. 从 ASSET_TYPE 表查询所有启用 BuyList 的配置
+//            SecurityMasterRebuildPhaseEvent assetTypePhase =
+//                    SecurityMasterRebuildPhaseEvent.start(SecurityMasterRebuildPhaseEvent.ASSET_TYPE);
 //            List<AssetTypeDo> assetTypeConfigs = assetTypeMapper.selectBuyListEnabledAssetTypes();
+//            assetTypePhase.count = assetTypeConfigs != null ? assetTypeConfigs.size() : 0;
+//            assetTypePhase.commit();
 //
 //            if (assetTypeConfigs == null || assetTypeConfigs.isEmpty()) {
 //                log.error("ASSET_TYPE 表中没有启用 BuyList 的配置（BUY_LIST='Y'），跳过数据加载");
-//                return;
+//                return 0L;
 //            }
 //
 //            log.info("从 ASSET_TYPE 表查询到 {} 条启用 BuyList 的配置", assetTypeConfigs.size());
@@ -80,10 +562,23 @@
 //            // 2. 构建映射关系 Map: assetType → Set<fullTableName>（用于 Redis 存储）
 //            Map<String, Set<String>> map = getAssetTypeFullTableNameMap(assetTypeConfigs, collect);
 //
-//            // 3. 获取资产类型对应的Map： assetType → [matchfield → [clientId1, clientId2]]
-//            // 每条配置只查询对应的一张表，相同 assetType 的结果会合并
-//            Map<String, List<Map<String, Object>>> extracted = getMultiAssetTypeClientIdMap(assetTypeConfigs, collect);
+//            // 3. 增量刷新：和上一代的清单比较，物理表后缀和配置都没变的 assetType 直接复用上一代的数据
+//            Map<String, String> fingerprints = getAssetTypeFingerprints(assetTypeConfigs, collect);
+//            long previousGeneration = nearCache.refreshGeneration();
+//            Map<String, ManifestEntry> reusedEntries = getReusableManifestEntries(previousGeneration, fingerprints);
+//            List<AssetTypeDo> configsToLoad = assetTypeConfigs.stream()
+//                    .filter(config -> !reusedEntries.containsKey(config.getAssetType()))
+//                    .collect(Collectors.toList());
+//            if (!reusedEntries.isEmpty()) {
+//                log.info("增量刷新: 复用代数 {} 中未变化的 {} 个资产类型 {}，重新加载 {} 条配置",
+//                        previousGeneration, reusedEntries.size(), reusedEntries.keySet(), configsToLoad.size());
+//            }
 //
+//            // 4. 分阶段流水线：读取线程（本地快照 + 并发查表，按 assetType 归并冻结）→ 有界队列 → 当前线程写入 Redis
+//            // 某个 assetType 的所有表读完就立即写入，数据库和 Redis 同时工作，总耗时接近最慢的阶段而不是各阶段之和；
+//            // 队列满时读取阶段阻塞、不再发起新的查询，内存中已读出未写入的数据有上限
+//            String businessDate = formatBusinessDate(businessDateValue);
+//            ClientIdDictionary clientIdDictionary = new ClientIdDictionary();
 //
 //            int totalAssetTypes = 0;
 //            int totalRecords = 0;
@@ -98,194 +593,709 @@
 //            }
 //
 //
-//            clearAllCache();
-//
-//            // 3. 遍历已合并的数据（按 assetType 去重），存入 Redis
-//            for (Map.Entry<String, List<Map<String, Object>>> entry : extracted.entrySet()) {
-//                try {
-//                    String assetType = entry.getKey();
-//                    List<Map<String, Object>> dataList = entry.getValue();
-//                    String matchField = assetTypeToMatchFieldMap.get(assetType);
-//
-//                    // 校验匹配字段
-//                    if (matchField == null || matchField.trim().isEmpty()) {
-//                        log.warn("配置缺少匹配字段: assetType={}", assetType);
-//                        continue;
-//                    }
-//
-//                    // 构建 Map<matchFieldValue, [CLIENT_ID1,CLIENT_ID2]>
-//                    Map<String, Set<String>> dataMap = new HashMap<>();
-//                    if (!CollectionUtils.isEmpty(dataList)) {
-//                        for (Map<String, Object> row : dataList) {
-//                            String matchFieldValue = (String) row.get("match_field_value");
-//                            String clientId = (String) row.get("CLIENT_ID");
-//
-//                            if (matchFieldValue != null && clientId != null) {
-//                                dataMap.computeIfAbsent(matchFieldValue.trim(), k -> new HashSet<>())
-//                                        .add(clientId.trim());
-//                            } else {
-//                                log.error("---------matchFieldValue is null or clientId is null---------");
-//                            }
+//            // 每次重建写入一个新的代数，读取方在指针切换前一直读旧代数，不会看到空数据或半成品
+//            long generation = nearCache.allocateGeneration();
+//            redisTemplate.opsForSet().add(REDIS_KEY_GENERATIONS, generation);
+//            List<String> failedAssetTypes = new ArrayList<>();
+//            SecurityMasterRedisWriter.WriteStats totalWriteStats = SecurityMasterRedisWriter.WriteStats.EMPTY;
+//            Map<String, String> manifest = new HashMap<>();
+//            long loadedAt = System.currentTimeMillis();
+//
+//            BlockingQueue<LoadedAssetType> loadedQueue =
+//                    new ArrayBlockingQueue<>(Math.max(1, properties.getPipelineQueueCapacity()));
+//            ExecutorService readerExecutor = Executors.newSingleThreadExecutor(r -> {
+//                Thread thread = new Thread(r, "security-master-reader");
+//                thread.setDaemon(true);
+//                return thread;
+//            });
+//            Future<Integer> reader = readerExecutor.submit(() -> readAssetTypes(configsToLoad, collect, businessDate,
+//                    fingerprints, clientIdDictionary, loadedQueue));
+//            int queriedConfigCount;
+//            try {
+//                // 3. 按读取完成的顺序逐个 assetType 存入 Redis
+//                for (LoadedAssetType loaded = loadedQueue.take(); loaded != LoadedAssetType.END; loaded = loadedQueue.take()) {
+//                    String assetType = loaded.assetType();
+//                    try {
+//                        // Map<matchFieldValue, [CLIENT_ID1,CLIENT_ID2]>，查询时已逐行归并好
+//                        Map<String, Set<String>> dataMap = loaded.dataMap();
+//                        String matchField = assetTypeToMatchFieldMap.get(assetType);
+//
+//                        // 校验匹配字段
+//                        if (matchField == null || matchField.trim().isEmpty()) {
+//                            log.warn("配置缺少匹配字段: assetType={}", assetType);
+//                            continue;
 //                        }
-//                    }
 //
-//                    // 保存数据到 Redis: assetType → Map<匹配字段值, CLIENT_ID>（数据为空时也存入空 Map）
-//                    String dataKey = REDIS_KEY_PREFIX_DATA + assetType.trim();
-//                    redisTemplate.opsForHash().putAll(dataKey, dataMap);
-//
-//                    // 为数据缓存设置过期时间（1 小时）
-//                    redisTemplate.expire(dataKey, 1, TimeUnit.HOURS);
+//                        // 先在内存中准备好本 assetType 的全部写入内容：按桶拆分的数据、反向索引、布隆过滤器
+//                        SecurityMasterRebuildPhaseEvent buildPhase =
+//                                SecurityMasterRebuildPhaseEvent.start(SecurityMasterRebuildPhaseEvent.INDEX_BUILD);
+//                        buildPhase.assetType = assetType;
+//                        buildPhase.generation = generation;
+//                        int bucketCount = getBucketCount(dataMap.size());
+//                        Map<String, Map<String, Set<String>>> buckets = splitIntoBuckets(generation, assetType, dataMap, bucketCount);
+//                        // 反向索引: clientId → Set<匹配字段值>，按客户查询时一次 HGET 即可，不必拉取整个 hash
+//                        Map<String, Set<String>> reverseMap = buildReverseIndex(dataMap);
+//                        // 布隆过滤器: 查询不存在的 productCode 时本地直接返回，不再访问 Redis
+//                        byte[] bloomBytes = serializeBloomFilter(dataMap.keySet());
+//                        buildPhase.count = dataMap.size();
+//                        buildPhase.commit();
+//
+//                        // 保存数据到 Redis: assetType → Map<匹配字段值, CLIENT_ID>，大资产类型按桶拆成多个 key
+//                        // 分块 HSET + 登记 + EXPIRE（1 小时 + 随机抖动）在一个 pipeline 中发送，同一 assetType 的 key 一起过期
+//                        SecurityMasterRebuildPhaseEvent writePhase =
+//                                SecurityMasterRebuildPhaseEvent.start(SecurityMasterRebuildPhaseEvent.REDIS_WRITE);
+//                        writePhase.assetType = assetType;
+//                        writePhase.generation = generation;
+//                        Duration dataTtl = jitteredTtl();
+//                        SecurityMasterRedisWriter.WriteStats writeStats = redisWriter.writeHashes(
+//                                buckets, registryKey(generation), dataTtl, clientIdSetRedisSerializer);
+//                        totalWriteStats = totalWriteStats.plus(writeStats);
+//                        totalWriteStats = totalWriteStats.plus(redisWriter.writeHash(reverseKey(generation, assetType),
+//                                reverseMap, registryKey(generation), dataTtl, clientIdSetRedisSerializer));
+//                        totalWriteStats = totalWriteStats.plus(redisWriter.writeBytes(bloomKey(generation, assetType),
+//                                bloomBytes, registryKey(generation), dataTtl));
+//                        writePhase.count = writeStats.fields();
+//                        writePhase.commit();
+//                        manifest.put(assetType,
+//                                new ManifestEntry(generation, loadedAt, fingerprints.get(assetType), bucketCount).encode());
+//
+//                        // 本次从数据库查询的结果写入本地快照（快照只和业务日期、配置指纹有关，与代数是否切换无关）
+//                        if (loaded.queried()) {
+//                            snapshotStore.write(businessDate, assetType, fingerprints.get(assetType), dataMap);
+//                        }
 //
-//                    totalAssetTypes++;
-//                    totalRecords += dataMap.size();
+//                        totalAssetTypes++;
+//                        totalRecords += dataMap.size();
 //
-//                    if (!dataMap.isEmpty()) {
-//                        log.info("✓ 资产类型 {} 数据加载成功，共 {} 条记录（matchField={}）",
-//                                assetType, dataMap.size(), matchField);
-//                    } else {
-//                        log.warn("✓ 资产类型 {} 数据为空，已存入空缓存（matchField={}）",
-//                                assetType, matchField);
+//                        if (!dataMap.isEmpty()) {
+//                            log.info("✓ 资产类型 {} 数据加载成功，共 {} 条记录（matchField={}），写入 {} KB / {} 条命令，耗时 {} ms",
+//                                    assetType, dataMap.size(), matchField,
+//                                    writeStats.bytes() / 1024, writeStats.commands(), writeStats.elapsedMillis());
+//                        } else {
+//                            log.warn("✓ 资产类型 {} 数据为空，已存入空缓存（matchField={}）",
+//                                    assetType, matchField);
+//                        }
+//                    } catch (Exception e) {
+//                        failedAssetTypes.add(assetType);
+//                        log.error("加载数据到 Redis 失败: assetType={}, 错误: {}",
+//                                assetType, e.getMessage(), e);
 //                    }
-//                } catch (Exception e) {
-//                    log.error("加载数据到 Redis 失败: assetType={}, 错误: {}",
-//                            entry.getKey(), e.getMessage(), e);
 //                }
+//                queriedConfigCount = reader.get();
+//            } catch (ExecutionException e) {
+//                // 读取阶段失败（查表异常等）：已写入的部分随新代数一起作废，继续使用旧代数
+//                log.error("读取 BR_SECURITY_MASTER 数据失败，放弃代数 {}: {}", generation, e.getCause().getMessage());
+//                retireGeneration(generation);
+//                return 0L;
+//            } finally {
+//                reader.cancel(true);
+//                readerExecutor.shutdownNow();
+//            }
+//
+//            // 有资产类型写入失败时不切换指针，继续使用旧代数；未切换的新代数 key 会随 TTL 过期
+//            if (!failedAssetTypes.isEmpty()) {
+//                log.error("代数 {} 有 {} 个资产类型写入失败，放弃切换: {}",
+//                        generation, failedAssetTypes.size(), failedAssetTypes);
+//                retireGeneration(generation);
+//                return 0L;
 //            }
 //
-//            // 6. 一次性保存所有映射关系到 Redis
-//            if (!map.isEmpty()) {
-//                redisTemplate.opsForHash().putAll(REDIS_KEY_MAPPING, map);
-//                // 为映射关系缓存设置过期时间（1 小时）
-//                redisTemplate.expire(REDIS_KEY_MAPPING, 1, TimeUnit.HOURS);
-//                log.info("✓ 映射关系已保存到 Redis，共 {} 条映射", map.size());
+//            // 5. 复用的 assetType 登记到新代数（旧代数退役时不会再让它们过期），并写入本代清单
+//            List<String> reusedDataKeys = new ArrayList<>();
+//            reusedEntries.forEach((assetType, entry) -> {
+//                reusedDataKeys.addAll(dataKeys(entry, assetType));
+//                reusedDataKeys.add(reverseKey(entry.sourceGeneration(), assetType));
+//                reusedDataKeys.add(bloomKey(entry.sourceGeneration(), assetType));
+//                manifest.put(assetType, entry.encode());
+//            });
+//            SecurityMasterRebuildPhaseEvent expirePhase =
+//                    SecurityMasterRebuildPhaseEvent.start(SecurityMasterRebuildPhaseEvent.EXPIRE);
+//            expirePhase.generation = generation;
+//            for (String reusedDataKey : reusedDataKeys) {
+//                redisTemplate.opsForSet().add(registryKey(generation), reusedDataKey);
+//            }
+//            redisWriter.expire(reusedDataKeys, jitteredTtl());
+//            expirePhase.count = reusedDataKeys.size();
+//            expirePhase.commit();
+//            redisWriter.writeHash(manifestKey(generation), manifest, registryKey(generation), jitteredTtl());
+//
+//            // 记录本代数据对应的业务日期，日切检查时据此判断是否需要切换
+//            redisTemplate.opsForValue().set(businessDateKey(generation), businessDate, jitteredTtl());
+//            redisTemplate.opsForSet().add(registryKey(generation), businessDateKey(generation));
+//
+//            // 6. 一次性保存所有映射关系到 Redis（映射写在最后，存在即代表该代数已完整写入）
+//            String mappingKey = mappingKey(generation);
+//            redisWriter.writeHash(mappingKey, map, registryKey(generation), CACHE_TTL, clientIdSetRedisSerializer);
+//            redisWriter.expire(Collections.singletonList(registryKey(generation)), jitteredTtl());
+//            log.info("✓ 映射关系已保存到 Redis，共 {} 条映射", map.size());
+//            log.info("Redis 写入统计: {} 个字段, {} KB, {} 条命令, 累计耗时 {} ms, 吞吐 {} 字段/s, {} KB/s",
+//                    totalWriteStats.fields(), totalWriteStats.bytes() / 1024, totalWriteStats.commands(),
+//                    totalWriteStats.elapsedMillis(), totalWriteStats.fieldsPerSecond(),
+//                    totalWriteStats.kilobytesPerSecond());
+//
+//            if (publish) {
+//                // 8. 原子切换当前代数指针，并通知所有节点的近端缓存失效
+//                nearCache.publishGeneration(generation);
+//
+//                // 9. 旧代数不立即删除，给正在读取的请求留出宽限期后自然过期
+//                retireGeneration(previousGeneration);
+//
+//                // 删除之前业务日期 / 当前业务日期旧配置的快照，预加载的下一业务日期快照保留
+//                snapshotStore.retainOnly(businessDate, fingerprints);
 //            }
 //
 //            long endTime = System.currentTimeMillis();
-//            log.info("========== SecurityMaster 数据加载完成 ==========");
-//            log.info("共查询 {} 张表，合并后 {} 个资产类型，总计 {} 条记录，耗时 {} ms",
-//                    assetTypeConfigs.size(), totalAssetTypes, totalRecords, (endTime - startTime));
+//            log.info("========== SecurityMaster 数据加载完成（代数 {}，业务日期 {}） ==========", generation, businessDate);
+//            log.info("共查询 {} 张表，合并后 {} 个资产类型（另复用 {} 个），总计 {} 条记录，耗时 {} ms",
+//                    queriedConfigCount, totalAssetTypes, reusedEntries.size(), totalRecords, (endTime - startTime));
+//            return generation;
 //
 //        } catch (Exception e) {
 //            log.error("SecurityMaster 数据加载失败", e);
+//            return 0L;
 //        }
 //    }
 //
 //
 //    /**
 //     * 获取指定 assetType 的完整数据 Map
-//     * 注意：由于 Redis 使用 JSON 序列化，Set 会被反序列化为 ArrayList，需要手动转换
 //     *
 //     * @param assetType 资产类型
 //     * @return Map<productCode, Set<clientId>>
 //     */
-//    @SuppressWarnings("unchecked")
-//    public Map<String, List<String>> getAssetTypeDataMap(String assetType) {
-//        String dataKey = REDIS_KEY_PREFIX_DATA + assetType.trim();
-//        Map<Object, Object> entries = redisTemplate.opsForHash().entries(dataKey);
+//    public Map<String, Set<String>> getAssetTypeDataMap(String assetType) {
+//        return guardedLookup(assetType, () -> lookupAssetTypeDataMap(assetType),
+//                () -> localCopy.getAssetTypeDataMap(assetType));
+//    }
 //
-//        if (CollectionUtils.isEmpty(entries)) {
-//            initCache();
+//    private Map<String, Set<String>> lookupAssetTypeDataMap(String assetType) {
+//        long generation = ensureGeneration(assetType);
+//        if (generation <= 0) {
+//            log.error("没有可用的 SecurityMaster 缓存代数: assetType={}", assetType);
+//            return new HashMap<>();
+//        }
+//        ManifestEntry entry = resolveManifestEntry(generation, assetType);
+//        if (isReplicaReadable(generation)) {
+//            try {
+//                Map<String, Set<String>> dataMap = getAssetTypeDataMap(securityMasterReadRedisTemplate, entry, assetType);
+//                // 副本上为空时可能是复制延迟，到主节点确认一次
+//                if (!dataMap.isEmpty()) {
+//                    return dataMap;
+//                }
+//            } catch (DataAccessException e) {
+//                replicaReadFailed(generation, e);
+//            }
+//        }
+//        return getAssetTypeDataMap(securityMasterSetRedisTemplate, entry, assetType);
+//    }
+//
+//    private Map<String, Set<String>> getAssetTypeDataMap(RedisTemplate<String, Set<String>> template,
+//                                                         ManifestEntry entry, String assetType) {
+//        if (entry.bucketCount() <= 0) {
+//            return template.<String, Set<String>>opsForHash().entries(dataKey(entry.sourceGeneration(), assetType));
+//        }
+//        // 按桶拆分时每个桶一条 HGETALL，在一个 pipeline 中发送后合并
+//        List<String> keys = dataKeys(entry, assetType);
+//        @SuppressWarnings("unchecked")
+//        RedisSerializer<String> keySerializer = (RedisSerializer<String>) template.getKeySerializer();
+//        List<Object> bucketResults = template.executePipelined((RedisCallback<Object>) connection -> {
+//            for (String key : keys) {
+//                connection.hashCommands().hGetAll(keySerializer.serialize(key));
+//            }
+//            return null;
+//        });
+//        Map<String, Set<String>> dataMap = new HashMap<>();
+//        for (Object bucketResult : bucketResults) {
+//            @SuppressWarnings("unchecked")
+//            Map<String, Set<String>> bucket = (Map<String, Set<String>>) bucketResult;
+//            if (bucket != null) {
+//                dataMap.putAll(bucket);
+//            }
+//        }
+//        return dataMap;
+//    }
+//
+//    /**
+//     * 根据 clientId 获取其关联的所有匹配字段值（例如该客户关联的全部 ISIN）
+//     * 读取 initCache 时生成的反向索引，只做一次 HGET；返回的集合不可修改
+//     *
+//     * @param assetType 资产类型
+//     * @param clientId  客户 ID
+//     * @return Set<matchFieldValue>，查不到时为空集合
+//     */
+//    public Set<String> getMatchFieldValues(String assetType, String clientId) {
+//        return guardedLookup(assetType, () -> lookupMatchFieldValues(assetType, clientId),
+//                () -> localCopy.getMatchFieldValues(assetType, clientId));
+//    }
+//
+//    private Set<String> lookupMatchFieldValues(String assetType, String clientId) {
+//        long startNanos = System.nanoTime();
+//        Set<String> matchFieldSet = nearCache.get(NEAR_CACHE_MATCH_FIELD_SET, assetType, clientId,
+//                () -> loadMatchFieldValues(assetType, clientId));
+//        metrics.recordLookupLatency(NEAR_CACHE_MATCH_FIELD_SET, assetType, System.nanoTime() - startNanos);
+//        return matchFieldSet != null ? matchFieldSet : Collections.emptySet();
+//    }
+//
+//    /**
+//     * 从 Redis 当前代数的反向索引加载；没有任何可用代数时返回 null，不写入近端缓存
+//     */
+//    private Set<String> loadMatchFieldValues(String assetType, String clientId) {
+//        long generation = ensureGeneration(assetType);
+//        if (generation <= 0) {
+//            log.error("没有可用的 SecurityMaster 缓存代数: assetType={}", assetType);
+//            return null;
+//        }
+//        Set<String> matchFieldSet = readHashValue(generation, resolveReverseKey(generation, assetType), clientId);
+//        return matchFieldSet != null ? matchFieldSet : Collections.emptySet();
+//    }
+//
+//    /**
+//     * 把 matchFieldValue → Set<clientId> 反转为 clientId → Set<matchFieldValue>
+//     * clientId 已经过字典规范化，反向索引的 key 直接复用同一个字符串实例
+//     */
+//    static Map<String, Set<String>> buildReverseIndex(Map<String, Set<String>> dataMap) {
+//        Map<String, Set<String>> reverseMap = new HashMap<>();
+//        dataMap.forEach((matchFieldValue, clientIdSet) -> {
+//            for (String clientId : clientIdSet) {
+//                reverseMap.computeIfAbsent(clientId, k -> new HashSet<>()).add(matchFieldValue);
+//            }
+//        });
+//        return reverseMap;
+//    }
+//
+//    /**
+//     * 流水线的读取阶段，在 security-master-reader 线程中执行：
+//     * 先从本地快照恢复（业务日期和配置指纹都一致的 assetType 不查数据库），再并发查询其余配置，
+//     * 每个 assetType 完整后放入 loadedQueue，结束（包括失败）时放入 END
+//     *
+//     * @return 查询数据库的配置数
+//     */
+//    private int readAssetTypes(List<AssetTypeDo> configsToLoad,
+//                               LinkedHashMap<String, String> tableNameMapping,
+//                               String businessDate,
+//                               Map<String, String> fingerprints,
+//                               ClientIdDictionary clientIdDictionary,
+//                               BlockingQueue<LoadedAssetType> loadedQueue) throws Exception {
+//        try {
+//            Set<String> restored = new LinkedHashSet<>();
+//            Set<String> assetTypesToLoad = configsToLoad.stream()
+//                    .map(AssetTypeDo::getAssetType)
+//                    .collect(Collectors.toCollection(LinkedHashSet::new));
+//            for (String assetType : assetTypesToLoad) {
+//                Map<String, Set<String>> snapshot =
+//                        snapshotStore.read(businessDate, assetType, fingerprints.get(assetType), clientIdDictionary);
+//                if (snapshot != null) {
+//                    restored.add(assetType);
+//                    loadedQueue.put(new LoadedAssetType(assetType, snapshot, false));
+//                }
+//            }
+//            List<AssetTypeDo> configsToQuery = configsToLoad.stream()
+//                    .filter(config -> !restored.contains(config.getAssetType()))
+//                    .collect(Collectors.toList());
+//            if (!restored.isEmpty()) {
+//                log.info("从本地快照恢复 {} 个资产类型 {}，需查询数据库 {} 条配置",
+//                        restored.size(), restored, configsToQuery.size());
+//            }
+//
+//            // 5. 获取资产类型对应的Map： assetType → [matchfield → [clientId1, clientId2]]
+//            // 每条配置只查询对应的一张表，相同 assetType 的结果会合并
+//            streamMultiAssetTypeClientIdMap(configsToQuery, tableNameMapping, clientIdDictionary, loadedQueue);
+//            return configsToQuery.size();
+//        } finally {
+//            loadedQueue.put(LoadedAssetType.END);
 //        }
-//        entries = redisTemplate.opsForHash().entries(dataKey);
-//        // 直接强转
-//        return (Map) entries;
 //    }
 //
-//    private Map<String, List<Map<String, Object>>> getMultiAssetTypeClientIdMap(
+//    /**
+//     * 查询每条配置对应的表数据，按 assetType 合并
+//     * 各配置的查询在有界线程池中并发执行，并发数即本次加载允许占用的 DB 连接数；
+//     * 每条配置查完即统计并合并，某个 assetType 的所有配置都查完后换成不可变 Set 放入 loadedQueue，交给写入阶段，
+//     * 不再等所有表查完；任意一张表查询失败时取消其余查询并抛出异常
+//     * 所有表（以及从本地快照恢复的数据）共享一个 clientId 字典，相同的 clientId 在整个构建中只保留一个 String 实例
+//     */
+//    private void streamMultiAssetTypeClientIdMap(
 //            List<AssetTypeDo> assetTypeConfigs,
-//            LinkedHashMap<String, String> tableNameMapping) throws Exception {
+//            LinkedHashMap<String, String> tableNameMapping,
+//            ClientIdDictionary clientIdDictionary,
+//            BlockingQueue<LoadedAssetType> loadedQueue) throws Exception {
 //
-//        Map<String, List<Map<String, Object>>> allDataMap = new HashMap<>();
+//        // 合并中的 assetType → [matchFieldValue → Set<clientId>]，以及每个 assetType 还未查完的配置数
+//        Map<String, Map<String, Set<String>>> mergingDataMap = new HashMap<>();
+//        Map<String, Integer> pendingConfigCount = new HashMap<>();
 //
 //        // 统计信息
-//        int totalQueryCount = 0;
-//        int totalRecordCount = 0;
 //        List<String> tablesWithData = new ArrayList<>();
 //        List<String> tablesWithoutData = new ArrayList<>();
 //        Map<String, Integer> tableRecordCountMap = new LinkedHashMap<>();
 //
 //        log.info("========== 开始查询 BR_SECURITY_MASTER 表数据 ==========");
 //
-//        // 遍历每条配置，每条配置只查询对应的一张表
+//        // 1. 校验配置，得到需要查询的 (配置, 表名) 列表
+//        List<AssetTypeDo> queryConfigs = new ArrayList<>();
+//        List<String> queryTableNames = new ArrayList<>();
 //        for (AssetTypeDo config : assetTypeConfigs) {
-//            try {
-//                String assetType = config.getAssetType();
-//                String matchField = config.getField();
-//                String conditionSql = config.getConditionSql();
+//            String assetType = config.getAssetType();
+//            String matchField = config.getField();
 //
-//                // 校验匹配字段
-//                if (matchField == null || matchField.trim().isEmpty()) {
-//                    log.warn("配置缺少匹配字段: assetType={}", assetType);
-//                    continue;
-//                }
+//            // 校验匹配字段
+//            if (matchField == null || matchField.trim().isEmpty()) {
+//                log.warn("配置缺少匹配字段: assetType={}", assetType);
+//                continue;
+//            }
 //
-//                // 根据该配置的 systemCode 直接获取对应的 fullTableName
-//                String tableNameKey = config.getSecurityMasterTableName();
-//                String fullTableName = tableNameMapping.get(tableNameKey);
+//            // 根据该配置的 systemCode 直接获取对应的 fullTableName
+//            String tableNameKey = config.getSecurityMasterTableName();
+//            String fullTableName = tableNameMapping.get(tableNameKey);
 //
-//                if (fullTableName == null) {
-//                    log.warn("无法获取表名: assetType={}, tableNameKey={}", assetType, tableNameKey);
-//                    continue;
-//                }
+//            if (fullTableName == null) {
+//                log.warn("无法获取表名: assetType={}, tableNameKey={}", assetType, tableNameKey);
+//                continue;
+//            }
+//            queryConfigs.add(config);
+//            queryTableNames.add(fullTableName);
+//            pendingConfigCount.merge(assetType, 1, Integer::sum);
+//        }
 //
-//                // 查询该配置对应的表数据（每条配置只查询一次）
-//                List<Map<String, Object>> tempDataList;
-//                try {
-//                    tempDataList = securityMasterMapper.selectSecurityMasterData(
-//                            fullTableName, matchField, conditionSql);
-//                } catch (Exception queryEx) {
-//                    log.error("查询表异常: assetType={}, 表名={}, conditionSql={}, 异常信息={}",
-//                            assetType, fullTableName, conditionSql, queryEx.getMessage(), queryEx);
-//                    throw queryEx;
+//        // 2. 并发查询（每条配置只查询一次，同一张物理表上的配置合并为一次扫描），按完成顺序统计并合并
+//        queryTablesInParallel(queryConfigs, queryTableNames, clientIdDictionary, (index, tableResult) -> {
+//            AssetTypeDo config = queryConfigs.get(index);
+//            String assetType = config.getAssetType();
+//            String conditionSql = config.getConditionSql();
+//            String fullTableName = queryTableNames.get(index);
+//
+//            // 统计记录数
+//            int recordCount = tableResult.recordCount;
+//            metrics.recordTableLoad(fullTableName, assetType, recordCount, tableResult.elapsedMillis);
+//            tableRecordCountMap.put(fullTableName, tableRecordCountMap.getOrDefault(fullTableName, 0) + recordCount);
+//
+//            // 记录有数据和无数据的表，并打印相应日志
+//            if (recordCount > 0) {
+//                if (!tablesWithData.contains(fullTableName)) {
+//                    tablesWithData.add(fullTableName);
 //                }
+//                log.info("查询表成功: assetType={}, 表名={}, conditionSql={}, 记录数={}",
+//                        assetType, fullTableName, conditionSql, recordCount);
+//            } else {
+//                if (!tablesWithoutData.contains(fullTableName) && !tablesWithData.contains(fullTableName)) {
+//                    tablesWithoutData.add(fullTableName);
+//                }
+//                log.warn("查询数据为空: assetType={}, 表名={}, conditionSql={}",
+//                        assetType, fullTableName, conditionSql);
+//            }
 //
-//                // 统计查询次数和记录数
-//                totalQueryCount++;
-//                int recordCount = (tempDataList != null) ? tempDataList.size() : 0;
-//                totalRecordCount += recordCount;
-//                tableRecordCountMap.put(fullTableName, tableRecordCountMap.getOrDefault(fullTableName, 0) + recordCount);
+//            // 相同 assetType 的数据进行合并（数据为空时也放入空 Map）
+//            Map<String, Set<String>> assetTypeDataMap = mergingDataMap.get(assetType);
+//            if (assetTypeDataMap == null) {
+//                mergingDataMap.put(assetType, tableResult.dataMap);
+//            } else {
+//                tableResult.dataMap.forEach((matchFieldValue, clientIds) ->
+//                        assetTypeDataMap.computeIfAbsent(matchFieldValue, k -> new HashSet<>()).addAll(clientIds));
+//            }
 //
-//                // 记录有数据和无数据的表，并打印相应日志
-//                if (recordCount > 0) {
-//                    if (!tablesWithData.contains(fullTableName)) {
-//                        tablesWithData.add(fullTableName);
+//            // 该 assetType 的所有配置都已查完：冻结后交给写入阶段，队列满时在这里等待
+//            if (pendingConfigCount.merge(assetType, -1, Integer::sum) == 0) {
+//                Map<String, Set<String>> dataMap = mergingDataMap.remove(assetType);
+//                SecurityMasterRebuildPhaseEvent buildPhase =
+//                        SecurityMasterRebuildPhaseEvent.start(SecurityMasterRebuildPhaseEvent.MAP_BUILD);
+//                buildPhase.assetType = assetType;
+//                freezeClientIdSets(dataMap);
+//                buildPhase.count = dataMap.size();
+//                buildPhase.commit();
+//                loadedQueue.put(new LoadedAssetType(assetType, dataMap, true));
+//            }
+//        });
+//
+//        // 打印统计汇总日志
+//        log.info("========== BR_SECURITY_MASTER 查询统计汇总 ==========");
+//        log.info("总查询次数: {} 次", queryConfigs.size());
+//        log.info("总记录数: {} 条", tableRecordCountMap.values().stream().mapToInt(Integer::intValue).sum());
+//        log.info("有数据的表 ({} 张): {}", tablesWithData.size(), tablesWithData);
+//        log.info("无数据的表 ({} 张): {}", tablesWithoutData.size(), tablesWithoutData);
+//        log.info("各表记录数明细: {}", tableRecordCountMap);
+//        log.info("不重复 clientId 数: {} 个", clientIdDictionary.size());
+//        log.info("===================================================");
+//    }
+//
+//    /**
+//     * 在有界线程池中并发执行各配置的表查询，每条配置查完后在调用线程中回调 listener（index 与 configs 对应）
+//     * 线程池只在本次加载期间存在，大小为 loadParallelism（DB 连接预算）
+//     * 开启 coalesceTableScans 时，落在同一张物理表上的多条配置合并为一次扫描（见 queryCoalescedTable），
+//     * 每张表只读一遍；统计仍按配置输出
+//     * 同时最多只有 loadParallelism 个扫描在执行，完成一个才提交下一个：listener 阻塞（写入阶段跟不上）时不会继续发起查询
+//     */
+//    private void queryTablesInParallel(List<AssetTypeDo> configs,
+//                                       List<String> tableNames,
+//                                       ClientIdDictionary clientIdDictionary,
+//                                       TableLoadListener listener) throws Exception {
+//        // 物理表名 → 配置下标
+//        Map<String, List<Integer>> tableGroups = new LinkedHashMap<>();
+//        for (int i = 0; i < configs.size(); i++) {
+//            String groupKey = properties.isCoalesceTableScans() ? tableNames.get(i) : String.valueOf(i);
+//            tableGroups.computeIfAbsent(groupKey, k -> new ArrayList<>()).add(i);
+//        }
+//        List<List<Integer>> groups = new ArrayList<>(tableGroups.values());
+//        if (groups.isEmpty()) {
+//            return;
+//        }
+//
+//        int parallelism = Math.max(1, Math.min(properties.getLoadParallelism(), groups.size()));
+//        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+//            private final AtomicInteger index = new AtomicInteger();
+//
+//            @Override
+//            public Thread newThread(Runnable r) {
+//                Thread thread = new Thread(r, "security-master-load-" + index.incrementAndGet());
+//                thread.setDaemon(true);
+//                return thread;
+//            }
+//        });
+//        try {
+//            ExecutorCompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+//            List<TableLoadResult> results = new ArrayList<>(Collections.nCopies(configs.size(), null));
+//            List<Callable<Integer>> tasks = new ArrayList<>(groups.size());
+//            for (int g = 0; g < groups.size(); g++) {
+//                int groupIndex = g;
+//                List<Integer> group = groups.get(g);
+//                String fullTableName = tableNames.get(group.get(0));
+//                tasks.add(() -> {
+//                    if (group.size() == 1) {
+//                        int index = group.get(0);
+//                        results.set(index, querySecurityMasterTable(configs.get(index), fullTableName, clientIdDictionary));
+//                    } else {
+//                        List<AssetTypeDo> groupConfigs = group.stream().map(configs::get).collect(Collectors.toList());
+//                        List<TableLoadResult> groupResults = queryCoalescedTable(groupConfigs, fullTableName, clientIdDictionary);
+//                        for (int j = 0; j < group.size(); j++) {
+//                            results.set(group.get(j), groupResults.get(j));
+//                        }
 //                    }
-//                    log.info("查询表成功: assetType={}, 表名={}, conditionSql={}, 记录数={}",
-//                            assetType, fullTableName, conditionSql, recordCount);
-//                } else {
-//                    if (!tablesWithoutData.contains(fullTableName) && !tablesWithData.contains(fullTableName)) {
-//                        tablesWithoutData.add(fullTableName);
+//                    return groupIndex;
+//                });
+//            }
+//            if (groups.size() < configs.size()) {
+//                log.info("按物理表合并扫描: {} 条配置 → {} 次表扫描", configs.size(), groups.size());
+//            }
+//
+//            // futures 与 tasks 按提交顺序一一对应
+//            List<Future<Integer>> futures = new ArrayList<>(groups.size());
+//            while (futures.size() < parallelism) {
+//                futures.add(completionService.submit(tasks.get(futures.size())));
+//            }
+//
+//            // 按完成顺序收集，任意一个失败立即取消其余查询
+//            for (int i = 0; i < groups.size(); i++) {
+//                Future<Integer> done = completionService.take();
+//                int groupIndex;
+//                try {
+//                    groupIndex = done.get();
+//                } catch (ExecutionException e) {
+//                    futures.forEach(future -> future.cancel(true));
+//                    List<Integer> failedGroup = groups.get(futures.indexOf(done));
+//                    Throwable cause = e.getCause();
+//                    for (int failedIndex : failedGroup) {
+//                        AssetTypeDo config = configs.get(failedIndex);
+//                        log.error("加载表数据失败: assetType={}, systemCode={}, 错误: {}",
+//                                config.getAssetType(), config.getSystemCode(), cause.getMessage(), cause);
 //                    }
-//                    log.warn("查询数据为空: assetType={}, 表名={}, conditionSql={}",
-//                            assetType, fullTableName, conditionSql);
+//                    throw new Exception(cause);
 //                }
+//                if (futures.size() < tasks.size()) {
+//                    futures.add(completionService.submit(tasks.get(futures.size())));
+//                }
+//                // 交给 listener 后释放引用，避免合并后两份数据同时存活
+//                for (int index : groups.get(groupIndex)) {
+//                    listener.onLoaded(index, results.get(index));
+//                    results.set(index, null);
+//                }
+//            }
+//        } finally {
+//            executor.shutdownNow();
+//        }
+//    }
+//
+//    /**
+//     * 单条配置查询完成的回调，在收集结果的线程中按完成顺序调用
+//     */
+//    @FunctionalInterface
+//    private interface TableLoadListener {
 //
-//                // 相同 assetType 的数据进行合并（数据为空时也放入空数组）
-//                if (allDataMap.containsKey(assetType)) {
-//                    if (tempDataList != null && !tempDataList.isEmpty()) {
-//                        allDataMap.get(assetType).addAll(tempDataList);
+//        void onLoaded(int index, TableLoadResult result) throws InterruptedException;
+//    }
+//
+//    /**
+//     * 流水线中读取阶段交给写入阶段的一个 assetType；queried 为 true 表示数据来自数据库，写入后保存本地快照
+//     * END 表示读取阶段已结束（成功或失败由读取线程的 Future 给出）
+//     */
+//    private record LoadedAssetType(String assetType, Map<String, Set<String>> dataMap, boolean queried) {
+//
+//        static final LoadedAssetType END = new LoadedAssetType(null, null, false);
+//    }
+//
+//    /**
+//     * 流式查询一张表：通过 ResultHandler 逐行读取游标，每行直接归并进 matchFieldValue → Set<clientId>，
+//     * 不再物化整表的 List<Map>，加载时的内存峰值只和结果规模相关，和原始行数无关
+//     */
+//    private TableLoadResult querySecurityMasterTable(AssetTypeDo config, String fullTableName,
+//                                                     ClientIdDictionary clientIdDictionary) throws Exception {
+//        String matchField = config.getField();
+//        String conditionSql = config.getConditionSql();
+//        TableLoadResult result = new TableLoadResult();
+//        SecurityMasterRebuildPhaseEvent queryPhase =
+//                SecurityMasterRebuildPhaseEvent.start(SecurityMasterRebuildPhaseEvent.TABLE_QUERY);
+//        queryPhase.assetType = config.getAssetType();
+//        queryPhase.tableName = fullTableName;
+//        long startTime = System.currentTimeMillis();
+//        try {
+//            securityMasterMapper.streamSecurityMasterData(fullTableName, matchField, conditionSql,
+//                    context -> result.accept(context.getResultObject(), clientIdDictionary));
+//            result.elapsedMillis = System.currentTimeMillis() - startTime;
+//            return result;
+//        } catch (Exception queryEx) {
+//            log.error("查询表异常: assetType={}, 表名={}, conditionSql={}, 异常信息={}",
+//                    config.getAssetType(), fullTableName, conditionSql, queryEx.getMessage(), queryEx);
+//            throw queryEx;
+//        } finally {
+//            queryPhase.count = result.recordCount;
+//            queryPhase.commit();
+//        }
+//    }
+//
+//    /**
+//     * 合并扫描一张物理表：同一张表上的多条配置只读一遍，每条配置的匹配字段和 conditionSql 各自投影成一列，
+//     * 行在内存中按列路由到对应配置的 TableLoadResult，结果与 configs 一一对应
+//     * <p>
+//     * SecurityMasterMapper.xml 中对应的 select（resultType="map"，fetchSize 与 streamSecurityMasterData 相同）：
+//     * <pre>
+//     * SELECT CLIENT_ID
+//     * &lt;foreach collection="configs" item="c" index="i"&gt;
+//     *     , CASE WHEN ${c.field} IS NOT NULL AND ${c.field} != '' ${c.conditionSql}
+//     *            THEN ${c.field} END AS match_field_value_${i}
+//     * &lt;/foreach&gt;
+//     * FROM ${tableName}
+//     * WHERE &lt;foreach collection="configs" item="c" open="(" separator=") OR (" close=")"&gt;
+//     *     ${c.field} IS NOT NULL AND ${c.field} != '' ${c.conditionSql}
+//     * &lt;/foreach&gt;
+//     * </pre>
+//     * 每一列的 CASE 条件与单表查询的 WHERE 完全相同，所以每条配置得到的行和分别查询时一致；
+//     * recordCount 为该配置命中的行数，elapsedMillis 为整次扫描的耗时
+//     */
+//    private List<TableLoadResult> queryCoalescedTable(List<AssetTypeDo> configs, String fullTableName,
+//                                                      ClientIdDictionary clientIdDictionary) throws Exception {
+//        int size = configs.size();
+//        String[] columns = new String[size];
+//        List<TableLoadResult> results = new ArrayList<>(size);
+//        for (int i = 0; i < size; i++) {
+//            columns[i] = "match_field_value_" + i;
+//            results.add(new TableLoadResult());
+//        }
+//        SecurityMasterRebuildPhaseEvent queryPhase =
+//                SecurityMasterRebuildPhaseEvent.start(SecurityMasterRebuildPhaseEvent.TABLE_QUERY);
+//        queryPhase.assetType = configs.stream().map(AssetTypeDo::getAssetType).collect(Collectors.joining(","));
+//        queryPhase.tableName = fullTableName;
+//        long[] rows = new long[1];
+//        long startTime = System.currentTimeMillis();
+//        try {
+//            securityMasterMapper.streamSecurityMasterTableScan(fullTableName, configs, context -> {
+//                rows[0]++;
+//                Map<String, Object> row = context.getResultObject();
+//                String clientId = (String) row.get("CLIENT_ID");
+//                for (int i = 0; i < size; i++) {
+//                    String matchFieldValue = (String) row.get(columns[i]);
+//                    if (matchFieldValue != null) {
+//                        results.get(i).accept(matchFieldValue, clientId, clientIdDictionary);
 //                    }
-//                } else {
-//                    allDataMap.put(assetType, tempDataList != null ? new ArrayList<>(tempDataList) : new ArrayList<>());
 //                }
+//            });
+//            long elapsedMillis = System.currentTimeMillis() - startTime;
+//            results.forEach(result -> result.elapsedMillis = elapsedMillis);
+//            return results;
+//        } catch (Exception queryEx) {
+//            log.error("合并查询表异常: 表名={}, assetTypes={}, 异常信息={}", fullTableName,
+//                    configs.stream().map(AssetTypeDo::getAssetType).collect(Collectors.toList()),
+//                    queryEx.getMessage(), queryEx);
+//            throw queryEx;
+//        } finally {
+//            queryPhase.count = rows[0];
+//            queryPhase.commit();
+//        }
+//    }
 //
-//            } catch (Exception e) {
-//                log.error("加载表数据失败: assetType={}, systemCode={}, 错误: {}",
-//                        config.getAssetType(), config.getSystemCode(), e.getMessage(), e);
-//                throw new Exception(e);
+//    /**
+//     * 每一代清单中 assetType 的记录：数据所在代数、加载时间、配置指纹
+//     * 以 "sourceGeneration|loadedAt|fingerprint|bucketCount" 字符串存放在 g{n}:manifest 中；bucketCount 为 0 表示数据未拆分
+//     */
+//    private record ManifestEntry(long sourceGeneration, long loadedAt, String fingerprint, int bucketCount) {
+//
+//        String encode() {
+//            return sourceGeneration + "|" + loadedAt + "|" + fingerprint + "|" + bucketCount;
+//        }
+//
+//        static ManifestEntry decode(String value) {
+//            String[] parts = value.split("\\|", 4);
+//            if (parts.length < 3) {
+//                return null;
+//            }
+//            try {
+//                // 旧清单没有桶数，即未拆分
+//                int bucketCount = parts.length == 4 ? Integer.parseInt(parts[3]) : 0;
+//                return new ManifestEntry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2], bucketCount);
+//            } catch (NumberFormatException e) {
+//                return null;
 //            }
 //        }
+//    }
 //
-//        // 打印统计汇总日志
-//        log.info("========== BR_SECURITY_MASTER 查询统计汇总 ==========");
-//        log.info("总查询次数: {} 次", totalQueryCount);
-//        log.info("总记录数: {} 条", totalRecordCount);
-//        log.info("有数据的表 ({} 张): {}", tablesWithData.size(), tablesWithData);
-//        log.info("无数据的表 ({} 张): {}", tablesWithoutData.size(), tablesWithoutData);
-//        log.info("各表记录数明细: {}", tableRecordCountMap);
-//        log.info("===================================================");
+//    /**
+//     * 单张表的流式加载结果
+//     * 逐行归并的逻辑放在这里，JMH 基准测试直接调用同一段代码
+//     */
+//    static final class TableLoadResult {
+//
+//        final Map<String, Set<String>> dataMap = new HashMap<>();
+//
+//        int recordCount;
+//
+//        private long elapsedMillis;
 //
-//        return allDataMap;
+//        /**
+//         * 归并一行查询结果：matchFieldValue → Set<clientId>
+//         */
+//        void accept(Map<String, Object> row, ClientIdDictionary clientIdDictionary) {
+//            accept((String) row.get("match_field_value"), (String) row.get("CLIENT_ID"), clientIdDictionary);
+//        }
+//
+//        /**
+//         * 归并一条 matchFieldValue / clientId，合并扫描时每一列各调用一次
+//         */
+//        void accept(String matchFieldValue, String clientId, ClientIdDictionary clientIdDictionary) {
+//            recordCount++;
+//            if (matchFieldValue != null && clientId != null) {
+//                dataMap.computeIfAbsent(matchFieldValue.trim(), k -> new HashSet<>())
+//                        .add(clientIdDictionary.canonicalize(clientId.trim()));
+//            } else {
+//                log.error("---------matchFieldValue is null or clientId is null---------");
+//            }
+//        }
+//    }
+//
+//    /**
+//     * 构建过程中用 HashSet 方便追加，完成后换成不可变 Set（数组存储，单元素时没有 HashMap 开销）
+//     */
+//    static void freezeClientIdSets(Map<String, Set<String>> dataMap) {
+//        dataMap.replaceAll((matchFieldValue, clientIds) -> Set.copyOf(clientIds));
+//    }
+//
+//    /**
+//     * 把 clientId 统一成字典中的规范实例，同时冻结为不可变集合
+//     */
+//    static void canonicalizeClientIdSets(Map<String, Set<String>> dataMap, ClientIdDictionary clientIdDictionary) {
+//        dataMap.replaceAll((matchFieldValue, clientIds) -> {
+//            String[] canonical = new String[clientIds.size()];
+//            int index = 0;
+//            for (String clientId : clientIds) {
+//                canonical[index++] = clientIdDictionary.canonicalize(clientId);
+//            }
+//            return Set.of(canonical);
+//        });
 //    }
 //
 //    private Map<String, Set<String>> getAssetTypeFullTableNameMap(List<AssetTypeDo> assetTypeConfigs, LinkedHashMap<String, String> collect) {
@@ -298,6 +1308,12 @@
 //            String tableNameKey = config.getSecurityMasterTableName();
 //            String fullTableName = collect.get(tableNameKey);
 //
+//            // TABLE_SWITCH_LOG 中没有有效记录的配置不写入映射，与数据加载时的处理一致
+//            if (fullTableName == null || fullTableName.trim().isEmpty()) {
+//                log.warn("无法获取表名，映射中跳过: assetType={}, tableNameKey={}", assetType, tableNameKey);
+//                continue;
+//            }
+//
 //            if (mapping.containsKey(assetType)) {
 //                Set<String> strings = mapping.get(assetType);
 //                strings.add(fullTableName);
@@ -311,9 +1327,8 @@
 //        return mapping;
 //    }
 //
-//    private LinkedHashMap<String, String> getStringStringLinkedHashMap() {
+//    private LinkedHashMap<String, String> getStringStringLinkedHashMap(Date businessDate) {
 //        // 从table_switch_log里获取表数据;
-//        Date businessDate = getBusinessDate();
 //
 //        LambdaQueryWrapper<TableSwitchLogDo> objectLambdaQueryWrapper = new LambdaQueryWrapper<>();
 //        objectLambdaQueryWrapper.eq(TableSwitchLogDo::getIsValid, "Y");
@@ -346,52 +1361,784 @@
 //     * @return 表名，例如 SECURITY_MASTER_BND_1
 //     */
 //    public Set<String> getTableName(String assetType) {
-//        Set<String> tableNameList = (Set<String>) redisTemplate.opsForHash().get(REDIS_KEY_MAPPING, assetType);
-//        if (!CollectionUtils.isEmpty(tableNameList)) {
-//            return tableNameList;
+//        return guardedLookup(assetType, () -> lookupTableName(assetType), () -> localCopy.getTableName(assetType));
+//    }
+//
+//    private Set<String> lookupTableName(String assetType) {
+//        long startNanos = System.nanoTime();
+//        try {
+//            boolean[] loaded = new boolean[1];
+//            Set<String> tableNameSet = nearCache.get(NEAR_CACHE_TABLE_NAME, assetType, null, () -> {
+//                loaded[0] = true;
+//                return loadTableName(assetType);
+//            });
+//            if (!loaded[0]) {
+//                metrics.recordTableNameLookup(assetType, SecurityMasterCacheMetrics.RESULT_NEAR_HIT);
+//            }
+//            return tableNameSet;
+//        } finally {
+//            metrics.recordLookupLatency(NEAR_CACHE_TABLE_NAME, assetType, System.nanoTime() - startNanos);
 //        }
-//        // 如果缓存不存在（可能已过期），尝试重新加载一次缓存
-//        log.info("找不到映射缓存，尝试重新加载 SecurityMaster 缓存...");
-//        initCache();
-//        Set<String> tableNameSet = (Set<String>) redisTemplate.opsForHash().get(REDIS_KEY_MAPPING, assetType);
+//    }
+//
+//    private Set<String> loadTableName(String assetType) {
+//        long generation = ensureGeneration(assetType);
+//        if (generation <= 0) {
+//            log.error("没有可用的 SecurityMaster 缓存代数: assetType={}", assetType);
+//            metrics.recordTableNameLookup(assetType, SecurityMasterCacheMetrics.RESULT_MISS);
+//            return null;
+//        }
+//        Set<String> tableNameSet = readHashValue(generation, mappingKey(generation), assetType);
+//        if (CollectionUtils.isEmpty(tableNameSet)) {
+//            // 当前代数完整可用，找不到只说明该 assetType 没有配置，不再触发重新加载
+//            log.warn("代数 {} 中找不到 assetType={} 的映射", generation, assetType);
+//            metrics.recordTableNameLookup(assetType, SecurityMasterCacheMetrics.RESULT_MISS);
+//            return Collections.emptySet();
+//        }
+//        metrics.recordTableNameLookup(assetType, SecurityMasterCacheMetrics.RESULT_REDIS_HIT);
 //        return tableNameSet;
 //    }
 //
+//    /**
+//     * 获取 matchField 对应的 clientId 集合
+//     * 先查本地近端缓存，未命中再查 Redis；返回的集合不可修改（多个调用方共享同一实例）
+//     *
+//     * @param assetType  资产类型
+//     * @param matchField 匹配字段值，例如 ISIN
+//     * @return Set<clientId>
+//     */
 //    public Set<String> getClientIdSet(String assetType, String matchField) {
-//        String dataKey = REDIS_KEY_PREFIX_DATA + assetType;
+//        return guardedLookup(assetType, () -> lookupClientIdSet(assetType, matchField),
+//                () -> localCopy.getClientIdSet(assetType, matchField));
+//    }
+//
+//    private Set<String> lookupClientIdSet(String assetType, String matchField) {
+//        long startNanos = System.nanoTime();
+//        SecurityMasterLookupEvent event = sampleLookupEvent(NEAR_CACHE_CLIENT_ID_SET, assetType);
+//        try {
+//            if (nearCache.isKnownAbsent(NEAR_CACHE_CLIENT_ID_SET, assetType, matchField)) {
+//                recordLookup(event, assetType, SecurityMasterCacheMetrics.RESULT_NEGATIVE_HIT);
+//                return Collections.emptySet();
+//            }
+//            boolean[] loaded = new boolean[1];
+//            Set<String> clientIdSet = nearCache.get(NEAR_CACHE_CLIENT_ID_SET, assetType, matchField, () -> {
+//                loaded[0] = true;
+//                return loadClientIdSet(assetType, matchField, event);
+//            });
+//            if (!loaded[0]) {
+//                recordLookup(event, assetType, SecurityMasterCacheMetrics.RESULT_NEAR_HIT);
+//            }
+//            if (event != null) {
+//                event.hitCount = clientIdSet != null && !clientIdSet.isEmpty() ? 1 : 0;
+//            }
+//            return clientIdSet != null ? clientIdSet : Collections.emptySet();
+//        } finally {
+//            metrics.recordLookupLatency(NEAR_CACHE_CLIENT_ID_SET, assetType, System.nanoTime() - startNanos);
+//            if (event != null) {
+//                event.commit();
+//            }
+//        }
+//    }
+//
+//    /**
+//     * 按 jfrLookupSampleRate 抽样创建并开始一个 JFR 查询事件；未抽中或当前没有 JFR 记录时返回 null
+//     */
+//    private SecurityMasterLookupEvent sampleLookupEvent(String operation, String assetType) {
+//        int sampleRate = properties.getJfrLookupSampleRate();
+//        if (sampleRate <= 0 || (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0)) {
+//            return null;
+//        }
+//        SecurityMasterLookupEvent event = new SecurityMasterLookupEvent();
+//        if (!event.isEnabled()) {
+//            return null;
+//        }
+//        event.operation = operation;
+//        event.assetType = assetType;
+//        event.begin();
+//        return event;
+//    }
 //
-//        // 先检查 key 是否存在
-//        Boolean keyExists = redisTemplate.hasKey(dataKey);
+//    /**
+//     * 记录单个 matchField 的查询结果：Micrometer 计数，抽中时同时写入 JFR 事件
+//     */
+//    private void recordLookup(SecurityMasterLookupEvent event, String assetType, String result) {
+//        metrics.recordLookup(assetType, result);
+//        if (event != null) {
+//            event.result = result;
+//        }
+//    }
 //
-//        if (Boolean.TRUE.equals(keyExists)) {
-//            // key 存在，获取数据
-//            Set<String> clientIdSet = (Set<String>) redisTemplate.opsForHash().get(dataKey, matchField);
-//            if (CollectionUtils.isEmpty(clientIdSet)) {
-//                log.warn("assetType={} 的缓存存在，但 matchField={} 对应的数据为空", assetType, matchField);
-//                return new HashSet<>();
+//    /**
+//     * 从 Redis 当前代数加载 clientId 集合；没有任何可用代数或确认不存在时返回 null，不写入近端缓存
+//     * 布隆过滤器判定不存在的直接返回，不访问 Redis；不存在的字段只记入短期负缓存
+//     */
+//    private Set<String> loadClientIdSet(String assetType, String matchField, SecurityMasterLookupEvent event) {
+//        long generation = ensureGeneration(assetType);
+//        if (generation <= 0) {
+//            log.error("重新加载后仍无法获取 assetType={} 的缓存", assetType);
+//            recordLookup(event, assetType, SecurityMasterCacheMetrics.RESULT_MISS);
+//            return null;
+//        }
+//
+//        if (!bloomFilter(generation, assetType).test(matchField)) {
+//            log.debug("assetType={} 在代数 {} 中没有 matchField={}（布隆过滤器）", assetType, generation, matchField);
+//            nearCache.markAbsent(NEAR_CACHE_CLIENT_ID_SET, assetType, matchField);
+//            recordLookup(event, assetType, SecurityMasterCacheMetrics.RESULT_BLOOM_REJECT);
+//            return null;
+//        }
+//        long redisStartNanos = System.nanoTime();
+//        Set<String> clientIdSet = readHashValue(generation, resolveDataKey(generation, assetType, matchField), matchField);
+//        if (event != null) {
+//            event.redisLatency = System.nanoTime() - redisStartNanos;
+//            event.generation = generation;
+//        }
+//        if (CollectionUtils.isEmpty(clientIdSet)) {
+//            log.warn("assetType={} 在代数 {} 中没有 matchField={} 对应的数据", assetType, generation, matchField);
+//            nearCache.markAbsent(NEAR_CACHE_CLIENT_ID_SET, assetType, matchField);
+//            recordLookup(event, assetType, SecurityMasterCacheMetrics.RESULT_MISS);
+//            return null;
+//        }
+//        recordLookup(event, assetType, SecurityMasterCacheMetrics.RESULT_REDIS_HIT);
+//        log.info("获取 clientIdSet 成功: assetType={}, matchField={}, 数量={}", assetType, matchField, clientIdSet.size());
+//        return clientIdSet;
+//    }
+//
+//    /**
+//     * 批量获取 matchField 对应的 clientId 集合，用于导入、校验等一次查很多产品代码的场景
+//     * 近端缓存未命中的字段按 bulkLookupChunkSize 拆成多条 HMGET，在一个 pipeline 中发送；
+//     * 每个 assetType 只做一次代数存活检查，未命中和重新加载语义与 getClientIdSet 相同
+//     *
+//     * @param assetType   资产类型
+//     * @param matchFields 匹配字段值集合，例如一批 ISIN
+//     * @return matchField → Set<clientId>，每个传入的 matchField 都有对应的值（查不到时为空集合）
+//     */
+//    public Map<String, Set<String>> getClientIdSets(String assetType, Collection<String> matchFields) {
+//        return guardedLookup(assetType, () -> lookupClientIdSets(assetType, matchFields), () -> {
+//            Map<String, Set<String>> result = new HashMap<>();
+//            for (String matchField : matchFields) {
+//                if (matchField != null) {
+//                    result.put(matchField, localCopy.getClientIdSet(assetType, matchField));
+//                }
+//            }
+//            return result;
+//        });
+//    }
+//
+//    private Map<String, Set<String>> lookupClientIdSets(String assetType, Collection<String> matchFields) {
+//        long startNanos = System.nanoTime();
+//        SecurityMasterLookupEvent event = sampleLookupEvent("clientIdSets", assetType);
+//        Set<String> distinctFields = new LinkedHashSet<>();
+//        Set<String> lookupFields = new LinkedHashSet<>();
+//        for (String matchField : matchFields) {
+//            if (matchField != null && distinctFields.add(matchField)
+//                    && !nearCache.isKnownAbsent(NEAR_CACHE_CLIENT_ID_SET, assetType, matchField)) {
+//                lookupFields.add(matchField);
+//            }
+//        }
+//        Map<String, Set<String>> result = new HashMap<>(distinctFields.size() * 2);
+//        if (distinctFields.isEmpty()) {
+//            return result;
+//        }
+//
+//        int[] missCount = new int[1];
+//        Map<String, Set<String>> found = lookupFields.isEmpty() ? Collections.emptyMap()
+//                : nearCache.getAll(NEAR_CACHE_CLIENT_ID_SET, assetType, lookupFields, misses -> {
+//                    missCount[0] = misses.size();
+//                    return loadClientIdSets(assetType, misses, event);
+//                });
+//        for (String matchField : distinctFields) {
+//            Set<String> clientIdSet = found.get(matchField);
+//            result.put(matchField, clientIdSet != null ? clientIdSet : Collections.emptySet());
+//        }
+//        int hitCount = (int) found.values().stream().filter(set -> !set.isEmpty()).count();
+//        log.info("批量获取 clientIdSet: assetType={}, 请求 {} 个, 命中数据 {} 个",
+//                assetType, distinctFields.size(), hitCount);
+//        metrics.recordLookup(assetType, SecurityMasterCacheMetrics.RESULT_NEGATIVE_HIT,
+//                distinctFields.size() - lookupFields.size());
+//        metrics.recordLookup(assetType, SecurityMasterCacheMetrics.RESULT_NEAR_HIT, lookupFields.size() - missCount[0]);
+//        metrics.recordLookupLatency("clientIdSets", assetType, System.nanoTime() - startNanos);
+//        if (event != null) {
+//            event.keyCount = distinctFields.size();
+//            event.hitCount = hitCount;
+//            event.commit();
+//        }
+//        return result;
+//    }
+//
+//    /**
+//     * 用 pipeline + 分块 HMGET 从 Redis 当前代数批量加载；没有任何可用代数时返回空 Map，不写入近端缓存
+//     * 布隆过滤器判定不存在的字段不发送 HMGET，和查不到的字段一样只记入短期负缓存
+//     */
+//    private Map<String, Set<String>> loadClientIdSets(String assetType, Collection<String> matchFields,
+//                                                      SecurityMasterLookupEvent event) {
+//        Map<String, Set<String>> loaded = new HashMap<>(matchFields.size() * 2);
+//        long generation = ensureGeneration(assetType);
+//        if (generation <= 0) {
+//            log.error("重新加载后仍无法获取 assetType={} 的缓存", assetType);
+//            metrics.recordLookup(assetType, SecurityMasterCacheMetrics.RESULT_MISS, matchFields.size());
+//            return loaded;
+//        }
+//
+//        Predicate<String> bloomFilter = bloomFilter(generation, assetType);
+//        List<String> fields = new ArrayList<>(matchFields.size());
+//        for (String matchField : matchFields) {
+//            if (bloomFilter.test(matchField)) {
+//                fields.add(matchField);
+//            } else {
+//                nearCache.markAbsent(NEAR_CACHE_CLIENT_ID_SET, assetType, matchField);
+//            }
+//        }
+//        metrics.recordLookup(assetType, SecurityMasterCacheMetrics.RESULT_BLOOM_REJECT,
+//                matchFields.size() - fields.size());
+//        if (fields.isEmpty()) {
+//            return loaded;
+//        }
+//
+//        // 按数据 key 分组（按桶拆分时同一批字段可能分布在多个桶），每组再按 chunkSize 拆成多条 HMGET
+//        Map<String, List<String>> fieldsByKey = new LinkedHashMap<>();
+//        for (String matchField : fields) {
+//            fieldsByKey.computeIfAbsent(resolveDataKey(generation, assetType, matchField), k -> new ArrayList<>())
+//                    .add(matchField);
+//        }
+//        long redisStartNanos = System.nanoTime();
+//        Map<String, Set<String>> replicaValues =
+//                isReplicaReadable(generation) ? multiGetFromReplica(generation, fieldsByKey) : null;
+//        Map<String, Set<String>> values;
+//        if (replicaValues != null) {
+//            values = replicaValues;
+//            // 副本上读不到的字段再到主节点确认一次
+//            if (replicaValues.size() < fields.size()) {
+//                Map<String, List<String>> missingByKey = new LinkedHashMap<>();
+//                fieldsByKey.forEach((dataKey, keyFields) -> {
+//                    List<String> missing = keyFields.stream()
+//                            .filter(matchField -> !replicaValues.containsKey(matchField))
+//                            .collect(Collectors.toList());
+//                    if (!missing.isEmpty()) {
+//                        missingByKey.put(dataKey, missing);
+//                    }
+//                });
+//                values.putAll(multiGet(securityMasterSetRedisTemplate, missingByKey));
 //            }
-//            log.info("获取 clientIdSet 成功: assetType={}, matchField={}, 数量={}", assetType, matchField, clientIdSet.size());
-//            return clientIdSet;
+//        } else {
+//            values = multiGet(securityMasterSetRedisTemplate, fieldsByKey);
+//        }
+//        if (event != null) {
+//            event.redisLatency = System.nanoTime() - redisStartNanos;
+//            event.generation = generation;
 //        }
 //
-//        // key 不存在，可能是缓存过期，尝试重新加载
-//        log.info("assetType={} 的缓存不存在，尝试重新加载 SecurityMaster 缓存...", assetType);
+//        for (String matchField : fields) {
+//            Set<String> clientIdSet = values.get(matchField);
+//            if (clientIdSet != null) {
+//                loaded.put(matchField, clientIdSet);
+//            } else {
+//                nearCache.markAbsent(NEAR_CACHE_CLIENT_ID_SET, assetType, matchField);
+//            }
+//        }
+//        metrics.recordLookup(assetType, SecurityMasterCacheMetrics.RESULT_REDIS_HIT, loaded.size());
+//        metrics.recordLookup(assetType, SecurityMasterCacheMetrics.RESULT_MISS, fields.size() - loaded.size());
+//        return loaded;
+//    }
+//
+//    /**
+//     * pipeline + 分块 HMGET：每个数据 key 的字段按 bulkLookupChunkSize 拆成多条 HMGET，在一个 pipeline 中发送
+//     *
+//     * @param template    读取用的模板（主节点或副本）
+//     * @param fieldsByKey 数据 key → 字段列表
+//     * @return 查到的 matchField → Set<clientId>，查不到的字段不在结果中
+//     */
+//    private Map<String, Set<String>> multiGet(RedisTemplate<String, Set<String>> template,
+//                                              Map<String, List<String>> fieldsByKey) {
+//        Map<String, Set<String>> values = new HashMap<>();
+//        if (fieldsByKey.isEmpty()) {
+//            return values;
+//        }
+//        int chunkSize = properties.getBulkLookupChunkSize();
+//        List<String> chunkKeys = new ArrayList<>();
+//        List<List<String>> chunks = new ArrayList<>();
+//        fieldsByKey.forEach((dataKey, keyFields) -> {
+//            for (int from = 0; from < keyFields.size(); from += chunkSize) {
+//                chunkKeys.add(dataKey);
+//                chunks.add(keyFields.subList(from, Math.min(from + chunkSize, keyFields.size())));
+//            }
+//        });
+//        @SuppressWarnings("unchecked")
+//        RedisSerializer<String> keySerializer = (RedisSerializer<String>) template.getKeySerializer();
+//        @SuppressWarnings("unchecked")
+//        RedisSerializer<String> hashKeySerializer = (RedisSerializer<String>) template.getHashKeySerializer();
+//
+//        // 结果按 chunk 顺序返回，每个 chunk 是与字段一一对应的 List<Set<String>>（已由模板的序列化器反序列化）
+//        List<Object> chunkResults = template.executePipelined((RedisCallback<Object>) connection -> {
+//            for (int c = 0; c < chunks.size(); c++) {
+//                List<String> chunk = chunks.get(c);
+//                byte[][] rawFields = new byte[chunk.size()][];
+//                for (int i = 0; i < chunk.size(); i++) {
+//                    rawFields[i] = hashKeySerializer.serialize(chunk.get(i));
+//                }
+//                connection.hashCommands().hMGet(keySerializer.serialize(chunkKeys.get(c)), rawFields);
+//            }
+//            return null;
+//        });
+//
+//        for (int c = 0; c < chunkResults.size(); c++) {
+//            List<String> chunk = chunks.get(c);
+//            int index = 0;
+//            for (Object value : (List<?>) chunkResults.get(c)) {
+//                @SuppressWarnings("unchecked")
+//                Set<String> clientIdSet = (Set<String>) value;
+//                String matchField = chunk.get(index++);
+//                if (clientIdSet != null) {
+//                    values.put(matchField, clientIdSet);
+//                }
+//            }
+//        }
+//        return values;
+//    }
+//
+//    /**
+//     * 熔断保护下的查询：熔断打开时直接读本地副本；Redis 访问失败时计一次失败，本次改读本地副本
+//     * 本地副本不可用（未开启、尚未加载或已超过 localCopyMaxStaleness）时快速失败，不等待 Redis 超时，也不触发 initCache
+//     * 降级结果不写入近端缓存，Redis 恢复后的查询不会命中它们
+//     */
+//    private <T> T guardedLookup(String assetType, Supplier<T> redisLookup, Supplier<T> localLookup) {
+//        if (circuitBreaker.allowRequest()) {
+//            try {
+//                return redisLookup.get();
+//            } catch (DataAccessException e) {
+//                circuitBreaker.recordFailure(e);
+//                if (!localCopy.isUsable()) {
+//                    throw e;
+//                }
+//            }
+//        } else if (!localCopy.isUsable()) {
+//            throw new RedisConnectionFailureException("SecurityMaster Redis 熔断中，且没有可用的本地副本");
+//        }
+//        metrics.recordLookup(assetType, SecurityMasterCacheMetrics.RESULT_DEGRADED);
+//        return localLookup.get();
+//    }
+//
+//    /**
+//     * 把当前代数完整复制到本 JVM，作为 Redis 熔断期间的降级数据源
+//     * 代数没变时只刷新副本的确认时间；熔断期间不刷新，副本的数据年龄从最后一次确认开始计算
+//     */
+//    private void refreshLocalCopyIfNeeded() {
+//        if (!circuitBreaker.allowRequest()) {
+//            return;
+//        }
+//        try {
+//            long generation = nearCache.refreshGeneration();
+//            if (!isGenerationAlive(generation)) {
+//                return;
+//            }
+//            if (localCopy.getGeneration() == generation) {
+//                localCopy.confirm();
+//                return;
+//            }
+//            if (isReplicaReadable(generation)) {
+//                try {
+//                    copyGeneration(generation, securityMasterReadRedisTemplate);
+//                    return;
+//                } catch (DataAccessException e) {
+//                    replicaReadFailed(generation, e);
+//                }
+//            }
+//            copyGeneration(generation, securityMasterSetRedisTemplate);
+//        } catch (DataAccessException e) {
+//            circuitBreaker.recordFailure(e);
+//            log.warn("刷新 SecurityMaster 本地副本失败: {}", e.getMessage());
+//        } catch (Exception e) {
+//            log.warn("刷新 SecurityMaster 本地副本失败: {}", e.getMessage(), e);
+//        }
+//    }
+//
+//    /**
+//     * 从指定节点读取该代数的全部映射和数据，替换本地副本
+//     */
+//    private void copyGeneration(long generation, RedisTemplate<String, Set<String>> template) {
+//        long startTime = System.currentTimeMillis();
+//        Map<String, Set<String>> tableNames = template.<String, Set<String>>opsForHash().entries(mappingKey(generation));
+//        Map<String, Map<String, Set<String>>> data = new HashMap<>();
+//        Map<String, Map<String, Set<String>>> reverse = new HashMap<>();
+//        // 反序列化出来的每个 clientId 都是新实例，与构建时一样用本次刷新的字典统一，整个副本只保留一份
+//        ClientIdDictionary clientIdDictionary = new ClientIdDictionary();
+//        int totalRecords = 0;
+//        for (String assetType : tableNames.keySet()) {
+//            Map<String, Set<String>> dataMap =
+//                    getAssetTypeDataMap(template, resolveManifestEntry(generation, assetType), assetType);
+//            canonicalizeClientIdSets(dataMap, clientIdDictionary);
+//            Map<String, Set<String>> reverseMap = buildReverseIndex(dataMap);
+//            freezeClientIdSets(reverseMap);
+//            data.put(assetType, dataMap);
+//            reverse.put(assetType, reverseMap);
+//            totalRecords += dataMap.size();
+//        }
+//        localCopy.replace(generation, tableNames, data, reverse);
+//        log.info("SecurityMaster 本地副本已更新到代数 {}：{} 个资产类型，{} 条记录，{} 个不同 clientId，耗时 {} ms",
+//                generation, tableNames.size(), totalRecords, clientIdDictionary.size(),
+//                System.currentTimeMillis() - startTime);
+//    }
+//
+//    /**
+//     * 获取当前可用的数据代数
+//     * 只有当 Redis 中完全没有可用代数（首次启动、整体过期或被清空）时才会触发 initCache，
+//     * 单个 assetType / matchField 查不到不会再引起全量重新加载
+//     *
+//     * @return 当前代数，<= 0 表示重新加载后仍不可用
+//     */
+//    private long ensureGeneration(String assetType) {
+//        long generation = nearCache.currentGeneration();
+//        if (isGenerationAlive(generation)) {
+//            return generation;
+//        }
+//        // 本节点可能错过了切换广播，先直接读一次指针
+//        generation = nearCache.refreshGeneration();
+//        if (isGenerationAlive(generation)) {
+//            return generation;
+//        }
+//        // 启动预热还没结束：等预热完成，不在请求线程里再发起一次加载
+//        CompletableFuture<Void> pendingWarmUp = warmUp;
+//        if (!pendingWarmUp.isDone()) {
+//            log.info("SecurityMaster 缓存预热中，最多等待 {}...", properties.getWarmUpWaitTimeout());
+//            try {
+//                pendingWarmUp.get(properties.getWarmUpWaitTimeout().toMillis(), TimeUnit.MILLISECONDS);
+//            } catch (TimeoutException e) {
+//                log.warn("等待 SecurityMaster 缓存预热超时");
+//            } catch (InterruptedException e) {
+//                Thread.currentThread().interrupt();
+//            } catch (ExecutionException e) {
+//                log.warn("SecurityMaster 缓存预热失败: {}", e.getMessage());
+//            }
+//            generation = nearCache.refreshGeneration();
+//            return isGenerationAlive(generation) ? generation : 0L;
+//        }
+//        log.info("当前没有可用的 SecurityMaster 缓存代数（代数={}），尝试重新加载...", generation);
+//        metrics.recordReloadTriggered(assetType);
 //        initCache();
+//        generation = nearCache.refreshGeneration();
+//        return isGenerationAlive(generation) ? generation : 0L;
+//    }
+//
+//    /**
+//     * 映射 key 在每一代的最后写入，存在即表示该代数完整且未过期
+//     */
+//    private boolean isGenerationAlive(long generation) {
+//        if (generation <= 0) {
+//            return false;
+//        }
+//        boolean alive = Boolean.TRUE.equals(redisTemplate.hasKey(mappingKey(generation)));
+//        circuitBreaker.recordSuccess();
+//        return alive;
+//    }
+//
+//    /**
+//     * 让旧代数的 key 在宽限期后过期，而不是立即删除，正在读旧代数的请求不会读到空
+//     */
+//    private void retireGeneration(long generation) {
+//        if (generation <= 0 || generation == nearCache.currentGeneration()) {
+//            return;
+//        }
+//        try {
+//            Duration grace = properties.getGenerationRetireGrace();
+//            List<String> keys = getRegisteredKeys(generation);
+//            // 被当前代数或预加载代数复用的数据 key 不能过期
+//            keys.removeAll(getRegisteredKeys(nearCache.currentGeneration()));
+//            for (Object pending : redisTemplate.opsForHash().values(REDIS_KEY_PENDING)) {
+//                keys.removeAll(getRegisteredKeys(Long.parseLong(pending.toString())));
+//            }
+//            keys.add(registryKey(generation));
+//            redisWriter.expire(keys, grace);
+//            redisTemplate.opsForSet().remove(REDIS_KEY_GENERATIONS, generation);
+//            log.info("旧代数 {} 将在 {} 后过期", generation, grace);
+//        } catch (Exception e) {
+//            log.warn("设置旧代数 {} 过期失败，等待其自然过期: {}", generation, e.getMessage());
+//        }
+//    }
+//
+//    /**
+//     * 读取某一代登记过的全部 key
+//     */
+//    private List<String> getRegisteredKeys(long generation) {
+//        Set<Object> members = redisTemplate.opsForSet().members(registryKey(generation));
+//        List<String> keys = new ArrayList<>();
+//        if (members != null) {
+//            for (Object member : members) {
+//                keys.add(member.toString());
+//            }
+//        }
+//        return keys;
+//    }
+//
+//    /**
+//     * 计算每个 assetType 的配置指纹：所有配置的 物理表名|匹配字段|conditionSql|编码版本 排序后取 MD5
+//     * TABLE_SWITCH_LOG 切换了后缀或 ASSET_TYPE 配置有改动时指纹就会变化
+//     */
+//    private Map<String, String> getAssetTypeFingerprints(List<AssetTypeDo> assetTypeConfigs,
+//                                                         LinkedHashMap<String, String> tableNameMapping) {
+//        Map<String, List<String>> parts = new HashMap<>();
+//        for (AssetTypeDo config : assetTypeConfigs) {
+//            String fullTableName = tableNameMapping.get(config.getSecurityMasterTableName());
+//            parts.computeIfAbsent(config.getAssetType(), k -> new ArrayList<>())
+//                    .add(fullTableName + "|" + config.getField() + "|" + config.getConditionSql()
+//                            + "|v" + ClientIdSetRedisSerializer.FORMAT_VERSION);
+//        }
+//        Map<String, String> fingerprints = new HashMap<>();
+//        parts.forEach((assetType, list) -> {
+//            Collections.sort(list);
+//            String joined = String.join("\n", list);
+//            fingerprints.put(assetType, DigestUtils.md5DigestAsHex(joined.getBytes(StandardCharsets.UTF_8)));
+//        });
+//        return fingerprints;
+//    }
+//
+//    /**
+//     * 找出上一代中可以直接复用的 assetType：指纹一致、数据未超过最长复用时间、数据 key 和反向索引 key 仍然存在
+//     */
+//    private Map<String, ManifestEntry> getReusableManifestEntries(long previousGeneration, Map<String, String> fingerprints) {
+//        Map<String, ManifestEntry> reusable = new HashMap<>();
+//        if (!properties.isIncrementalRefreshEnabled() || !isGenerationAlive(previousGeneration)) {
+//            return reusable;
+//        }
+//        long oldestLoadedAt = System.currentTimeMillis() - properties.getIncrementalMaxReuseAge().toMillis();
+//        Map<Object, Object> previousManifest = redisTemplate.opsForHash().entries(manifestKey(previousGeneration));
+//        for (Map.Entry<Object, Object> item : previousManifest.entrySet()) {
+//            String assetType = item.getKey().toString();
+//            ManifestEntry entry = ManifestEntry.decode(item.getValue().toString());
+//            if (entry != null
+//                    && entry.fingerprint().equals(fingerprints.get(assetType))
+//                    && entry.loadedAt() >= oldestLoadedAt
+//                    && Boolean.TRUE.equals(redisTemplate.hasKey(dataKeys(entry, assetType).get(0)))
+//                    && Boolean.TRUE.equals(redisTemplate.hasKey(reverseKey(entry.sourceGeneration(), assetType)))) {
+//                reusable.put(assetType, entry);
+//            }
+//        }
+//        return reusable;
+//    }
+//
+//    /**
+//     * 通过当前代的清单找到 assetType 的数据实际所在的代数（增量刷新时可能沿用更早代数的 key）和桶数
+//     * 清单很小，按代数缓存在近端缓存中
+//     */
+//    private ManifestEntry resolveManifestEntry(long generation, String assetType) {
+//        return nearCache.get(NEAR_CACHE_MANIFEST_ENTRY, assetType, null, () -> {
+//            Object value = redisTemplate.opsForHash().get(manifestKey(generation), assetType);
+//            ManifestEntry entry = value != null ? ManifestEntry.decode(value.toString()) : null;
+//            return entry != null ? entry : new ManifestEntry(generation, 0L, "", 0);
+//        });
+//    }
+//
+//    private long resolveSourceGeneration(long generation, String assetType) {
+//        return resolveManifestEntry(generation, assetType).sourceGeneration();
+//    }
+//
+//    /**
+//     * 字段数超过 dataShardThreshold 时按 dataBucketSize 计算桶数，0 表示不拆分
+//     */
+//    private int getBucketCount(int fieldCount) {
+//        if (!properties.isDataShardingEnabled() || fieldCount <= properties.getDataShardThreshold()) {
+//            return 0;
+//        }
+//        int bucketSize = Math.max(1, properties.getDataBucketSize());
+//        return (fieldCount + bucketSize - 1) / bucketSize;
+//    }
+//
+//    /**
+//     * 按桶拆分数据：bucketCount 为 0 时整个 Map 写入一个 key
+//     */
+//    private static Map<String, Map<String, Set<String>>> splitIntoBuckets(long generation, String assetType,
+//                                                                        Map<String, Set<String>> dataMap,
+//                                                                        int bucketCount) {
+//        if (bucketCount <= 0) {
+//            return Collections.singletonMap(dataKey(generation, assetType), dataMap);
+//        }
+//        Map<String, Map<String, Set<String>>> buckets = new LinkedHashMap<>(bucketCount * 2);
+//        for (int bucket = 0; bucket < bucketCount; bucket++) {
+//            buckets.put(dataKey(generation, assetType, bucket), new HashMap<>());
+//        }
+//        dataMap.forEach((matchFieldValue, clientIds) -> buckets
+//                .get(dataKey(generation, assetType, bucketOf(matchFieldValue, bucketCount)))
+//                .put(matchFieldValue, clientIds));
+//        return buckets;
+//    }
 //
-//        // 再次检查
-//        keyExists = redisTemplate.hasKey(dataKey);
-//        if (Boolean.TRUE.equals(keyExists)) {
-//            Set<String> clientIdSet = (Set<String>) redisTemplate.opsForHash().get(dataKey, matchField);
-//            if (CollectionUtils.isEmpty(clientIdSet)) {
-//                log.warn("重新加载后，assetType={} 的缓存存在，但 matchField={} 对应的数据为空", assetType, matchField);
-//                return new HashSet<>();
+//    /**
+//     * 产品代码所在的桶；String.hashCode 由语言规范定义，各节点、各版本 JVM 计算结果一致
+//     */
+//    static int bucketOf(String matchFieldValue, int bucketCount) {
+//        return Math.floorMod(matchFieldValue.hashCode(), bucketCount);
+//    }
+//
+//    /**
+//     * 清单记录对应的所有数据 key（未拆分时只有一个）
+//     */
+//    private static List<String> dataKeys(ManifestEntry entry, String assetType) {
+//        if (entry.bucketCount() <= 0) {
+//            return Collections.singletonList(dataKey(entry.sourceGeneration(), assetType));
+//        }
+//        List<String> keys = new ArrayList<>(entry.bucketCount());
+//        for (int bucket = 0; bucket < entry.bucketCount(); bucket++) {
+//            keys.add(dataKey(entry.sourceGeneration(), assetType, bucket));
+//        }
+//        return keys;
+//    }
+//
+//    /**
+//     * 获取 assetType 在当前代的布隆过滤器，按代数缓存在近端缓存中
+//     * 旧代数没有写入过滤器（或读取失败）时返回恒为 true 的判定，退回到直接查 Redis
+//     */
+//    private Predicate<String> bloomFilter(long generation, String assetType) {
+//        return nearCache.get(NEAR_CACHE_BLOOM_FILTER, assetType, null, () -> {
+//            byte[] raw = redisWriter.readBytes(bloomKey(resolveSourceGeneration(generation, assetType), assetType));
+//            if (raw == null) {
+//                return matchField -> true;
+//            }
+//            try {
+//                BloomFilter<CharSequence> filter = BloomFilter.readFrom(new ByteArrayInputStream(raw), MATCH_FIELD_FUNNEL);
+//                return filter::mightContain;
+//            } catch (IOException | RuntimeException e) {
+//                log.warn("读取 assetType={} 的布隆过滤器失败，直接查询 Redis: {}", assetType, e.getMessage());
+//                return matchField -> true;
 //            }
-//            log.info("重新加载后获取 clientIdSet 成功: assetType={}, matchField={}, 数量={}", assetType, matchField, clientIdSet.size());
-//            return clientIdSet;
+//        });
+//    }
+//
+//    /**
+//     * 按本次加载的匹配字段值构建布隆过滤器并序列化
+//     */
+//    private byte[] serializeBloomFilter(Set<String> matchFieldValues) {
+//        BloomFilter<CharSequence> filter = BloomFilter.create(MATCH_FIELD_FUNNEL,
+//                Math.max(matchFieldValues.size(), 1), properties.getBloomFilterFpp());
+//        matchFieldValues.forEach(filter::put);
+//        ByteArrayOutputStream out = new ByteArrayOutputStream();
+//        try {
+//            filter.writeTo(out);
+//        } catch (IOException e) {
+//            throw new UncheckedIOException(e);
 //        }
+//        return out.toByteArray();
+//    }
+//
+//    /**
+//     * 产品代码实际所在的数据 key，按桶拆分时路由到对应的桶
+//     */
+//    private String resolveDataKey(long generation, String assetType, String matchField) {
+//        ManifestEntry entry = resolveManifestEntry(generation, assetType);
+//        return entry.bucketCount() > 0
+//                ? dataKey(entry.sourceGeneration(), assetType, bucketOf(matchField, entry.bucketCount()))
+//                : dataKey(entry.sourceGeneration(), assetType);
+//    }
+//
+//    private String resolveReverseKey(long generation, String assetType) {
+//        return reverseKey(resolveSourceGeneration(generation, assetType), assetType);
+//    }
+//
+//    static String manifestKey(long generation) {
+//        return REDIS_KEY_PREFIX + "g" + generation + ":manifest";
+//    }
 //
-//        log.error("重新加载后仍无法获取 assetType={} 的缓存", assetType);
-//        return new HashSet<>();
+//    static String registryKey(long generation) {
+//        return REDIS_KEY_PREFIX + "g" + generation + ":keys";
+//    }
+//
+//    static String mappingKey(long generation) {
+//        return REDIS_KEY_PREFIX + "g" + generation + ":mapping";
+//    }
+//
+//    static String dataKey(long generation, String assetType) {
+//        return REDIS_KEY_PREFIX + "g" + generation + ":data:" + assetType.trim();
+//    }
+//
+//    static String dataKey(long generation, String assetType, int bucket) {
+//        return dataKey(generation, assetType) + ":" + bucket;
+//    }
+//
+//    static String businessDateKey(long generation) {
+//        return REDIS_KEY_PREFIX + "g" + generation + ":business_date";
+//    }
+//
+//    static String bloomKey(long generation, String assetType) {
+//        return REDIS_KEY_PREFIX + "g" + generation + ":bloom:" + assetType.trim();
+//    }
+//
+//    static String reverseKey(long generation, String assetType) {
+//        return REDIS_KEY_PREFIX + "g" + generation + ":reverse:" + assetType.trim();
+//    }
+//
+//    /**
+//     * 数据 hash / 反向索引 hash / 映射 hash 的操作入口，value 直接反序列化为不可变 Set
+//     */
+//    private HashOperations<String, String, Set<String>> setHashOperations() {
+//        return securityMasterSetRedisTemplate.opsForHash();
+//    }
+//
+//    /**
+//     * 查询用的单字段 HGET：当前代数已同步到副本时先读副本，
+//     * 副本上读不到（复制延迟，或读到了另一个还没追上的副本）或读取失败时再到主节点确认一次
+//     */
+//    private Set<String> readHashValue(long generation, String key, String field) {
+//        if (isReplicaReadable(generation)) {
+//            try {
+//                Set<String> value = securityMasterReadRedisTemplate.<String, Set<String>>opsForHash().get(key, field);
+//                if (value != null) {
+//                    return value;
+//                }
+//            } catch (DataAccessException e) {
+//                replicaReadFailed(generation, e);
+//            }
+//        }
+//        return setHashOperations().get(key, field);
+//    }
+//
+//    /**
+//     * 该代数的查询能否路由到副本
+//     * 代数切换的广播来自主节点，副本可能还没同步到新代数；映射 key 是每一代最后写入的，
+//     * 副本上能读到它才说明该代数已完整复制过去。检查不通过时按 replicaGenerationCheckInterval 限频重试，期间读主节点
+//     */
+//    private boolean isReplicaReadable(long generation) {
+//        if (securityMasterReadRedisTemplate == securityMasterSetRedisTemplate || generation <= 0) {
+//            return false;
+//        }
+//        if (replicaReadableGeneration == generation) {
+//            return true;
+//        }
+//        long now = System.currentTimeMillis();
+//        if (now - replicaCheckedAt < properties.getReplicaGenerationCheckInterval().toMillis()) {
+//            return false;
+//        }
+//        replicaCheckedAt = now;
+//        try {
+//            if (Boolean.TRUE.equals(securityMasterReadRedisTemplate.hasKey(mappingKey(generation)))) {
+//                replicaReadableGeneration = generation;
+//                log.info("代数 {} 已同步到副本，查询切换到副本", generation);
+//                return true;
+//            }
+//        } catch (Exception e) {
+//            log.warn("检查副本代数失败，查询仍走主节点: {}", e.getMessage());
+//        }
+//        return false;
+//    }
+//
+//    /**
+//     * 副本读取失败：撤销该代数的副本路由，按 replicaGenerationCheckInterval 限频重新检查，期间查询走主节点
+//     * 主节点仍然正常，副本故障不计入 Redis 熔断
+//     */
+//    private void replicaReadFailed(long generation, DataAccessException e) {
+//        if (replicaReadableGeneration == generation) {
+//            replicaReadableGeneration = 0L;
+//            replicaCheckedAt = System.currentTimeMillis();
+//            log.warn("从副本读取代数 {} 失败，查询切回主节点: {}", generation, e.getMessage());
+//        }
+//    }
+//
+//    /**
+//     * 从副本批量读取；读取失败时返回 null，由调用方改读主节点
+//     */
+//    private Map<String, Set<String>> multiGetFromReplica(long generation, Map<String, List<String>> fieldsByKey) {
+//        try {
+//            return multiGet(securityMasterReadRedisTemplate, fieldsByKey);
+//        } catch (DataAccessException e) {
+//            replicaReadFailed(generation, e);
+//            return null;
+//        }
 //    }
 //
 //    /**
@@ -399,11 +2146,28 @@
 //     */
 //    public void clearAllCache() {
 //        log.warn("开始清除所有 SecurityMaster 缓存...");
-//        // 删除映射关系缓存
-//        redisTemplate.delete(REDIS_KEY_MAPPING);
-//        // 删除所有数据缓存
-//        redisTemplate.delete(redisTemplate.keys(REDIS_KEY_PREFIX_DATA + "*"));
-//        log.info("SecurityMaster 缓存已清除");
+//        // 删除当前代数指针
+//        redisTemplate.delete(SecurityMasterNearCache.REDIS_KEY_CURRENT_GENERATION);
+//
+//        // 按登记集合删除所有代数的数据，不扫描整个 keyspace
+//        long deletedCount = 0L;
+//        Set<Object> generations = redisTemplate.opsForSet().members(REDIS_KEY_GENERATIONS);
+//        if (generations != null) {
+//            for (Object generation : generations) {
+//                long id = Long.parseLong(generation.toString());
+//                List<String> keys = getRegisteredKeys(id);
+//                keys.add(registryKey(id));
+//                deletedCount += redisWriter.unlink(keys);
+//            }
+//        }
+//        redisTemplate.delete(REDIS_KEY_GENERATIONS);
+//        redisTemplate.delete(REDIS_KEY_PENDING);
+//        redisTemplate.delete(REDIS_KEY_PENDING_FINGERPRINT);
+//
+//        // 删除旧版不带代数的缓存（没有登记集合，只能用 SCAN 游标分批查找）
+//        deletedCount += redisWriter.unlink(Collections.singletonList(REDIS_KEY_MAPPING));
+//        deletedCount += redisWriter.unlinkByPattern(REDIS_KEY_PREFIX_DATA + "*");
+//        log.info("SecurityMaster 缓存已清除，共删除 {} 个key", deletedCount);
 //    }
 //
 //    private Date getBusinessDate() {
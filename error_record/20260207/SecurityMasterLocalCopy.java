@@ -0,0 +1,92 @@
+//package cn.bochk.pap.server.business.service;
+//
+//import jakarta.annotation.Resource;
+//import org.springframework.stereotype.Component;
+//
+//import java.util.Collections;
+//import java.util.HashMap;
+//import java.util.Map;
+//import java.util.Set;
+//
+///**
+// * 最近一个完整代数在本 JVM 内的只读副本，Redis 熔断期间的降级数据源
+// * 由 SecurityMasterCacheService 在后台按 localCopyRefreshInterval 刷新：代数变化时整体替换，没变化时只更新确认时间
+// * 确认时间即副本最后一次被确认为最新的时间，超过 localCopyMaxStaleness 后副本不再可用，查询快速失败而不是返回过旧的数据
+// * <p>
+// * 副本保存全部 assetType 的数据和反向索引，内存占用约为 Redis 中一代数据的两倍，数据量很大时可关闭 localCopyEnabled
+// *
+// * @author liuhb
+// */
+//@Component
+//public class SecurityMasterLocalCopy {
+//
+//    @Resource
+//    private SecurityMasterCacheProperties properties;
+//
+//    private volatile Copy copy;
+//
+//    private volatile long confirmedAt;
+//
+//    /**
+//     * 副本对应的代数，没有副本时为 0
+//     */
+//    public long getGeneration() {
+//        Copy current = copy;
+//        return current != null ? current.generation() : 0L;
+//    }
+//
+//    public long getConfirmedAt() {
+//        return confirmedAt;
+//    }
+//
+//    /**
+//     * 副本是否可用于降级查询：已开启、已加载，且数据年龄不超过 localCopyMaxStaleness
+//     */
+//    public boolean isUsable() {
+//        return properties.isLocalCopyEnabled() && copy != null
+//                && System.currentTimeMillis() - confirmedAt <= properties.getLocalCopyMaxStaleness().toMillis();
+//    }
+//
+//    /**
+//     * 整体替换为新一代的数据
+//     *
+//     * @param generation 代数
+//     * @param tableNames assetType → Set<表名>
+//     * @param data       assetType → [matchFieldValue → Set<clientId>]
+//     * @param reverse    assetType → [clientId → Set<matchFieldValue>]
+//     */
+//    void replace(long generation, Map<String, Set<String>> tableNames,
+//                 Map<String, Map<String, Set<String>>> data, Map<String, Map<String, Set<String>>> reverse) {
+//        copy = new Copy(generation, tableNames, data, reverse);
+//        confirmedAt = System.currentTimeMillis();
+//    }
+//
+//    /**
+//     * 确认副本仍是 Redis 中的当前代数
+//     */
+//    void confirm() {
+//        confirmedAt = System.currentTimeMillis();
+//    }
+//
+//    Set<String> getTableName(String assetType) {
+//        return copy.tableNames().getOrDefault(assetType, Collections.emptySet());
+//    }
+//
+//    Set<String> getClientIdSet(String assetType, String matchField) {
+//        return copy.data().getOrDefault(assetType, Collections.emptyMap())
+//                .getOrDefault(matchField, Collections.emptySet());
+//    }
+//
+//    Map<String, Set<String>> getAssetTypeDataMap(String assetType) {
+//        return new HashMap<>(copy.data().getOrDefault(assetType, Collections.emptyMap()));
+//    }
+//
+//    Set<String> getMatchFieldValues(String assetType, String clientId) {
+//        return copy.reverse().getOrDefault(assetType, Collections.emptyMap())
+//                .getOrDefault(clientId, Collections.emptySet());
+//    }
+//
+//    private record Copy(long generation, Map<String, Set<String>> tableNames,
+//                        Map<String, Map<String, Set<String>>> data, Map<String, Map<String, Set<String>>> reverse) {
+//    }
+//}
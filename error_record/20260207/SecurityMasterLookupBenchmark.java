@@ -0,0 +1,258 @@
+//package cn.bochk.pap.server.business.service;
+//
+//import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+//import org.openjdk.jmh.annotations.Benchmark;
+//import org.openjdk.jmh.annotations.BenchmarkMode;
+//import org.openjdk.jmh.annotations.Fork;
+//import org.openjdk.jmh.annotations.Level;
+//import org.openjdk.jmh.annotations.Measurement;
+//import org.openjdk.jmh.annotations.Mode;
+//import org.openjdk.jmh.annotations.OutputTimeUnit;
+//import org.openjdk.jmh.annotations.Param;
+//import org.openjdk.jmh.annotations.Scope;
+//import org.openjdk.jmh.annotations.Setup;
+//import org.openjdk.jmh.annotations.State;
+//import org.openjdk.jmh.annotations.TearDown;
+//import org.openjdk.jmh.annotations.Warmup;
+//import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+//import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+//import org.springframework.data.redis.core.RedisTemplate;
+//import org.springframework.data.redis.serializer.RedisSerializer;
+//import org.springframework.util.ReflectionUtils;
+//
+//import java.lang.reflect.Field;
+//import java.time.Duration;
+//import java.util.ArrayList;
+//import java.util.HashMap;
+//import java.util.HashSet;
+//import java.util.List;
+//import java.util.Map;
+//import java.util.Random;
+//import java.util.Set;
+//import java.util.concurrent.ThreadLocalRandom;
+//import java.util.concurrent.TimeUnit;
+//
+///**
+// * SecurityMaster 缓存查询路径的 JMH 基准测试，连接本地 Redis（docker run -p 6379:6379 redis）
+// * 不启动 Spring 容器：手工组装 Redis 相关的 bean，写入一代合成数据后直接调用 SecurityMasterCacheService 的查询方法；
+// * 不会触发 initCache，所以不需要数据库
+// * <p>
+// * 旧版 getClientId(tableName, productCode) 所在的类与新版同名，不能放在同一个模块里，
+// * 这里用相同的 HGET 调用（String value，JSON 序列化）来衡量它命中时的开销
+// * <p>
+// * 运行：java -jar security-master-benchmarks.jar SecurityMasterLookupBenchmark -t 8 -prof gc
+// * nearCacheMaximumSize=0 时近端缓存几乎不保留条目，衡量的是每次都访问 Redis 的路径
+// *
+// * @author liuhb
+// */
+//@BenchmarkMode(Mode.Throughput)
+//@OutputTimeUnit(TimeUnit.SECONDS)
+//@State(Scope.Benchmark)
+//@Warmup(iterations = 3, time = 5)
+//@Measurement(iterations = 5, time = 5)
+//@Fork(1)
+//public class SecurityMasterLookupBenchmark {
+//
+//    private static final String ASSET_TYPE = "BENCH";
+//    private static final String SMALL_ASSET_TYPE = "BENCH_SMALL";
+//    private static final String TABLE_NAME = "BR_SECURITY_MASTER_BENCH_1";
+//    private static final String LEGACY_DATA_KEY = "security_master:data:" + TABLE_NAME;
+//    private static final Duration TTL = Duration.ofHours(1);
+//
+//    @Param({"localhost"})
+//    private String redisHost;
+//
+//    @Param({"6379"})
+//    private int redisPort;
+//
+//    /**
+//     * BENCH 资产类型的产品代码数
+//     */
+//    @Param({"100000"})
+//    private int products;
+//
+//    /**
+//     * getAssetTypeDataMap 读取的 BENCH_SMALL 资产类型的产品代码数
+//     */
+//    @Param({"10000"})
+//    private int smallProducts;
+//
+//    @Param({"100000", "0"})
+//    private long nearCacheMaximumSize;
+//
+//    /**
+//     * 批量查询每次请求的产品代码数
+//     */
+//    @Param({"500"})
+//    private int bulkSize;
+//
+//    private LettuceConnectionFactory connectionFactory;
+//    private RedisTemplate<String, Object> redisTemplate;
+//    private SecurityMasterNearCache nearCache;
+//    private SecurityMasterCacheService service;
+//    private String[] productCodes;
+//
+//    @Setup(Level.Trial)
+//    public void setUp() {
+//        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(redisHost, redisPort));
+//        connectionFactory.afterPropertiesSet();
+//        connectionFactory.start();
+//
+//        redisTemplate = new RedisTemplate<>();
+//        redisTemplate.setConnectionFactory(connectionFactory);
+//        redisTemplate.setKeySerializer(RedisSerializer.string());
+//        redisTemplate.setHashKeySerializer(RedisSerializer.string());
+//        redisTemplate.setValueSerializer(RedisSerializer.json());
+//        redisTemplate.setHashValueSerializer(RedisSerializer.json());
+//        redisTemplate.afterPropertiesSet();
+//
+//        SecurityMasterRedisConfiguration configuration = new SecurityMasterRedisConfiguration();
+//        ClientIdSetRedisSerializer serializer = configuration.clientIdSetRedisSerializer(redisTemplate);
+//        RedisTemplate<String, Set<String>> setRedisTemplate =
+//                configuration.securityMasterSetRedisTemplate(connectionFactory, redisTemplate, serializer);
+//
+//        SecurityMasterCacheProperties properties = new SecurityMasterCacheProperties();
+//        properties.setNearCacheMaximumSize(nearCacheMaximumSize);
+//
+//        nearCache = new SecurityMasterNearCache();
+//        inject(nearCache, "redisTemplate", redisTemplate);
+//        inject(nearCache, "properties", properties);
+//        nearCache.init();
+//
+//        SecurityMasterRedisWriter redisWriter = new SecurityMasterRedisWriter();
+//        inject(redisWriter, "redisTemplate", redisTemplate);
+//        inject(redisWriter, "properties", properties);
+//
+//        // 不调用 init()，不启动探测线程；基准测试期间 Redis 正常，熔断不会打开
+//        SecurityMasterRedisCircuitBreaker circuitBreaker = new SecurityMasterRedisCircuitBreaker();
+//        inject(circuitBreaker, "redisTemplate", redisTemplate);
+//        inject(circuitBreaker, "nearCache", nearCache);
+//        inject(circuitBreaker, "properties", properties);
+//
+//        SecurityMasterLocalCopy localCopy = new SecurityMasterLocalCopy();
+//        inject(localCopy, "properties", properties);
+//
+//        SecurityMasterCacheMetrics metrics = new SecurityMasterCacheMetrics();
+//        inject(metrics, "meterRegistry", new SimpleMeterRegistry());
+//        inject(metrics, "nearCache", nearCache);
+//        inject(metrics, "circuitBreaker", circuitBreaker);
+//        inject(metrics, "localCopy", localCopy);
+//        metrics.init();
+//
+//        service = new SecurityMasterCacheService();
+//        inject(service, "redisTemplate", redisTemplate);
+//        inject(service, "securityMasterSetRedisTemplate", setRedisTemplate);
+//        inject(service, "securityMasterReadRedisTemplate", setRedisTemplate);
+//        inject(service, "clientIdSetRedisSerializer", serializer);
+//        inject(service, "nearCache", nearCache);
+//        inject(service, "properties", properties);
+//        inject(service, "redisWriter", redisWriter);
+//        inject(service, "metrics", metrics);
+//        inject(service, "circuitBreaker", circuitBreaker);
+//        inject(service, "localCopy", localCopy);
+//
+//        // 写入一代合成数据并切换指针，和 buildCache 写入的 key 结构相同
+//        Random random = new Random(42);
+//        productCodes = new String[products];
+//        Map<String, Set<String>> dataMap = new HashMap<>(products * 2);
+//        Map<String, String> legacyDataMap = new HashMap<>(products * 2);
+//        for (int i = 0; i < products; i++) {
+//            productCodes[i] = String.format("XS%010d", i);
+//            Set<String> clientIds = new HashSet<>();
+//            for (int j = 0, n = 1 + random.nextInt(5); j < n; j++) {
+//                clientIds.add(String.format("C%09d", random.nextInt(products / 3 + 1)));
+//            }
+//            dataMap.put(productCodes[i], Set.copyOf(clientIds));
+//            legacyDataMap.put(productCodes[i], clientIds.iterator().next());
+//        }
+//        Map<String, Set<String>> smallDataMap = new HashMap<>(smallProducts * 2);
+//        for (int i = 0; i < smallProducts; i++) {
+//            smallDataMap.put(productCodes[i % products], dataMap.get(productCodes[i % products]));
+//        }
+//
+//        long generation = nearCache.allocateGeneration();
+//        redisTemplate.opsForSet().add(SecurityMasterCacheService.REDIS_KEY_GENERATIONS, generation);
+//        String registryKey = SecurityMasterCacheService.registryKey(generation);
+//        redisWriter.writeHash(SecurityMasterCacheService.dataKey(generation, ASSET_TYPE), dataMap, registryKey, TTL, serializer);
+//        redisWriter.writeHash(SecurityMasterCacheService.dataKey(generation, SMALL_ASSET_TYPE), smallDataMap, registryKey, TTL, serializer);
+//        redisWriter.writeHash(SecurityMasterCacheService.mappingKey(generation),
+//                Map.of(ASSET_TYPE, Set.of(TABLE_NAME), SMALL_ASSET_TYPE, Set.of(TABLE_NAME)), registryKey, TTL, serializer);
+//        nearCache.publishGeneration(generation);
+//
+//        // 旧版 getClientId 读取的 key：tableName → Map<产品代码, CLIENT_ID>
+//        redisTemplate.opsForHash().putAll(LEGACY_DATA_KEY, legacyDataMap);
+//    }
+//
+//    @TearDown(Level.Trial)
+//    public void tearDown() throws Exception {
+//        service.clearAllCache();
+//        redisTemplate.delete(LEGACY_DATA_KEY);
+//        nearCache.destroy();
+//        connectionFactory.destroy();
+//    }
+//
+//    /**
+//     * 同一个热点产品代码，近端缓存命中
+//     */
+//    @Benchmark
+//    public Set<String> getClientIdSetHot() {
+//        return service.getClientIdSet(ASSET_TYPE, productCodes[0]);
+//    }
+//
+//    /**
+//     * 随机产品代码，命中率取决于 nearCacheMaximumSize
+//     */
+//    @Benchmark
+//    public Set<String> getClientIdSetRandom() {
+//        return service.getClientIdSet(ASSET_TYPE, randomProductCode());
+//    }
+//
+//    /**
+//     * 不存在的产品代码（负缓存 / 布隆过滤器路径）
+//     */
+//    @Benchmark
+//    public Set<String> getClientIdSetUnknown() {
+//        return service.getClientIdSet(ASSET_TYPE, "UNKNOWN" + ThreadLocalRandom.current().nextInt(1000));
+//    }
+//
+//    /**
+//     * 批量查询 bulkSize 个随机产品代码
+//     */
+//    @Benchmark
+//    public Map<String, Set<String>> getClientIdSets() {
+//        List<String> codes = new ArrayList<>(bulkSize);
+//        for (int i = 0; i < bulkSize; i++) {
+//            codes.add(randomProductCode());
+//        }
+//        return service.getClientIdSets(ASSET_TYPE, codes);
+//    }
+//
+//    /**
+//     * 整个资产类型的 HGETALL
+//     */
+//    @Benchmark
+//    public Map<String, Set<String>> getAssetTypeDataMap() {
+//        return service.getAssetTypeDataMap(SMALL_ASSET_TYPE);
+//    }
+//
+//    /**
+//     * 旧版 getClientId(tableName, productCode) 命中时的调用
+//     */
+//    @Benchmark
+//    public Object legacyGetClientId() {
+//        return redisTemplate.opsForHash().get(LEGACY_DATA_KEY, randomProductCode());
+//    }
+//
+//    private String randomProductCode() {
+//        return productCodes[ThreadLocalRandom.current().nextInt(productCodes.length)];
+//    }
+//
+//    private static void inject(Object target, String fieldName, Object value) {
+//        Field field = ReflectionUtils.findField(target.getClass(), fieldName);
+//        if (field == null) {
+//            throw new IllegalStateException(target.getClass().getSimpleName() + " 没有字段 " + fieldName);
+//        }
+//        ReflectionUtils.makeAccessible(field);
+//        ReflectionUtils.setField(field, target, value);
+//    }
+//}
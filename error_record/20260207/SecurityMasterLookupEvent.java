@@ -0,0 +1,51 @@
+//package cn.bochk.pap.server.business.service;
+//
+//import jdk.jfr.Category;
+//import jdk.jfr.Description;
+//import jdk.jfr.Event;
+//import jdk.jfr.Label;
+//import jdk.jfr.Name;
+//import jdk.jfr.StackTrace;
+//import jdk.jfr.Timespan;
+//
+///**
+// * SecurityMaster 缓存查询的 JFR 事件，按 jfrLookupSampleRate 抽样记录
+// * 事件持续时间为整次查询（含近端缓存），redisLatency 只统计访问 Redis 的部分，近端缓存命中时为 0
+// * <p>
+// * 持续低开销记录：-XX:StartFlightRecording=name=pap,settings=default,maxage=6h,disk=true
+// * 查看：jfr print --events cn.bochk.pap.SecurityMasterLookup recording.jfr
+// *
+// * @author liuhb
+// */
+//@Name("cn.bochk.pap.SecurityMasterLookup")
+//@Label("SecurityMaster Lookup")
+//@Category({"PAP", "SecurityMaster"})
+//@Description("SecurityMaster 缓存查询（抽样）")
+//@StackTrace(false)
+//public class SecurityMasterLookupEvent extends Event {
+//
+//    @Label("Operation")
+//    String operation;
+//
+//    @Label("Asset Type")
+//    String assetType;
+//
+//    /**
+//     * near_hit、redis_hit、miss、negative_hit、bloom_reject；批量查询时为空，见 keyCount / hitCount
+//     */
+//    @Label("Result")
+//    String result;
+//
+//    @Label("Key Count")
+//    int keyCount = 1;
+//
+//    @Label("Hit Count")
+//    int hitCount;
+//
+//    @Label("Redis Latency")
+//    @Timespan(Timespan.NANOSECONDS)
+//    long redisLatency;
+//
+//    @Label("Generation")
+//    long generation;
+//}
@@ -0,0 +1,298 @@
+//package cn.bochk.pap.server.business.service;
+//
+//import com.github.benmanes.caffeine.cache.Cache;
+//import com.github.benmanes.caffeine.cache.Caffeine;
+//import jakarta.annotation.PostConstruct;
+//import jakarta.annotation.PreDestroy;
+//import jakarta.annotation.Resource;
+//import lombok.extern.slf4j.Slf4j;
+//import org.springframework.data.redis.connection.Message;
+//import org.springframework.data.redis.connection.MessageListener;
+//import org.springframework.data.redis.core.RedisTemplate;
+//import org.springframework.data.redis.listener.ChannelTopic;
+//import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+//import org.springframework.stereotype.Component;
+//
+//import java.util.ArrayList;
+//import java.util.Collection;
+//import java.util.HashMap;
+//import java.util.List;
+//import java.util.Map;
+//import java.util.function.Function;
+//import java.util.function.Supplier;
+//
+///**
+// * SecurityMaster 本地近端缓存（L1）
+// * 放在 Redis 前面，热点查询直接在 JVM 内返回；
+// * 缓存 key 带上数据代数（generation），initCache 重建完成后通过 Redis pub/sub 通知所有节点失效
+// *
+// * @author liuhb
+// */
+//@Component
+//@Slf4j
+//public class SecurityMasterNearCache implements MessageListener {
+//
+//    /**
+//     * 当前代数指针，读取方只读这个 key 指向的那一代数据
+//     */
+//    public static final String REDIS_KEY_CURRENT_GENERATION = "br_security_master:current_generation";
+//    /**
+//     * 代数序号，每次重建 INCR 分配一个新的代数
+//     */
+//    public static final String REDIS_KEY_GENERATION_SEQ = "br_security_master:generation_seq";
+//    public static final String REDIS_CHANNEL_INVALIDATE = "br_security_master:invalidate";
+//
+//    @Resource
+//    private RedisTemplate<String, Object> redisTemplate;
+//
+//    @Resource
+//    private SecurityMasterCacheProperties properties;
+//
+//    /**
+//     * Caffeine 基于 W-TinyLFU，按访问频率淘汰，冷门的 productCode 不会把热点挤出去
+//     */
+//    private Cache<NearCacheKey, Object> cache;
+//
+//    /**
+//     * 负缓存：记录短时间内确认不存在的字段，和正常条目分开计数
+//     */
+//    private Cache<NearCacheKey, Boolean> negativeCache;
+//
+//    private RedisMessageListenerContainer listenerContainer;
+//
+//    /**
+//     * 当前数据代数，-1 表示本节点还未从 Redis 读取过
+//     */
+//    private volatile long generation = -1;
+//
+//    /**
+//     * 本节点切换到当前代数的时间，供代数年龄指标使用
+//     */
+//    private volatile long generationChangedAt;
+//
+//    /**
+//     * 代数变化时 notifyAll，供等待其他节点重建完成的线程使用
+//     */
+//    private final Object generationMonitor = new Object();
+//
+//    @PostConstruct
+//    public void init() {
+//        cache = Caffeine.newBuilder()
+//                .maximumSize(properties.getNearCacheMaximumSize())
+//                .expireAfterWrite(properties.getNearCacheExpireAfterWrite())
+//                .build();
+//        negativeCache = Caffeine.newBuilder()
+//                .maximumSize(properties.getNegativeCacheMaximumSize())
+//                .expireAfterWrite(properties.getNegativeCacheExpireAfterWrite())
+//                .build();
+//
+//        // 订阅失效广播
+//        listenerContainer = new RedisMessageListenerContainer();
+//        listenerContainer.setConnectionFactory(redisTemplate.getConnectionFactory());
+//        listenerContainer.addMessageListener(this, new ChannelTopic(REDIS_CHANNEL_INVALIDATE));
+//        listenerContainer.afterPropertiesSet();
+//        listenerContainer.start();
+//        log.info("SecurityMaster 近端缓存已启动，maximumSize={}, expireAfterWrite={}",
+//                properties.getNearCacheMaximumSize(), properties.getNearCacheExpireAfterWrite());
+//    }
+//
+//    @PreDestroy
+//    public void destroy() throws Exception {
+//        if (listenerContainer != null) {
+//            listenerContainer.destroy();
+//        }
+//    }
+//
+//    /**
+//     * 从近端缓存获取数据，未命中时调用 loader 从 Redis 加载
+//     * loader 返回 null 时不缓存（保持原有的 miss 重试语义）
+//     * 注意：loader 可能触发 initCache 并推进代数，所以不能放在 cache.get(key, fn) 的计算函数里执行
+//     *
+//     * @param region    数据类别，例如 clientIdSet、tableName
+//     * @param assetType 资产类型
+//     * @param field     hash 字段，例如 matchField
+//     * @param loader    未命中时的加载逻辑
+//     */
+//    @SuppressWarnings("unchecked")
+//    public <T> T get(String region, String assetType, String field, Supplier<T> loader) {
+//        NearCacheKey key = new NearCacheKey(currentGeneration(), region, assetType, field);
+//        Object cached = cache.getIfPresent(key);
+//        if (cached != null) {
+//            return (T) cached;
+//        }
+//        T value = loader.get();
+//        if (value != null) {
+//            // 加载期间代数若已推进，这里写入的是旧代数的 key，不会被新代数的查询命中
+//            cache.put(key, value);
+//        }
+//        return value;
+//    }
+//
+//    /**
+//     * 批量版本的 get：先逐个查近端缓存，未命中的字段一次性交给 bulkLoader 加载
+//     * bulkLoader 返回结果中没有的字段（或值为 null）不写入近端缓存
+//     *
+//     * @param region     数据类别
+//     * @param assetType  资产类型
+//     * @param fields     hash 字段集合
+//     * @param bulkLoader 未命中字段的批量加载逻辑
+//     * @return 字段 → 值，只包含命中或加载到的字段
+//     */
+//    @SuppressWarnings("unchecked")
+//    public <T> Map<String, T> getAll(String region, String assetType, Collection<String> fields,
+//                                     Function<Collection<String>, Map<String, T>> bulkLoader) {
+//        long current = currentGeneration();
+//        Map<String, T> result = new HashMap<>(fields.size() * 2);
+//        List<String> misses = new ArrayList<>();
+//        for (String field : fields) {
+//            Object cached = cache.getIfPresent(new NearCacheKey(current, region, assetType, field));
+//            if (cached != null) {
+//                result.put(field, (T) cached);
+//            } else {
+//                misses.add(field);
+//            }
+//        }
+//        if (!misses.isEmpty()) {
+//            Map<String, T> loaded = bulkLoader.apply(misses);
+//            loaded.forEach((field, value) -> {
+//                if (value != null) {
+//                    cache.put(new NearCacheKey(current, region, assetType, field), value);
+//                    result.put(field, value);
+//                }
+//            });
+//        }
+//        return result;
+//    }
+//
+//    /**
+//     * 当前代数下该字段是否已确认不存在
+//     */
+//    public boolean isKnownAbsent(String region, String assetType, String field) {
+//        return negativeCache.getIfPresent(new NearCacheKey(currentGeneration(), region, assetType, field)) != null;
+//    }
+//
+//    /**
+//     * 记录当前代数下该字段不存在，负缓存到期或代数切换后失效
+//     */
+//    public void markAbsent(String region, String assetType, String field) {
+//        negativeCache.put(new NearCacheKey(currentGeneration(), region, assetType, field), Boolean.TRUE);
+//    }
+//
+//    /**
+//     * 获取当前数据代数；首次访问时从 Redis 读取，之后由失效广播推进
+//     */
+//    public long currentGeneration() {
+//        long current = generation;
+//        if (current < 0) {
+//            current = readGeneration();
+//            generation = current;
+//            generationChangedAt = System.currentTimeMillis();
+//        }
+//        return current;
+//    }
+//
+//    public long getGenerationChangedAt() {
+//        return generationChangedAt;
+//    }
+//
+//    /**
+//     * 直接从 Redis 读取最新代数（不依赖 pub/sub），并同步到本地
+//     */
+//    public long refreshGeneration() {
+//        long latest = readGeneration();
+//        onGenerationChanged(latest);
+//        return latest;
+//    }
+//
+//    /**
+//     * 等待代数从 fromGeneration 变化，用于非构建节点等待“新一代数据已就绪”信号
+//     * 优先依赖 pub/sub 推送，超时后再直接读一次 Redis 兜底（pub/sub 消息可能丢失）
+//     *
+//     * @param fromGeneration 开始等待前观察到的代数
+//     * @param timeoutMillis  最长等待时间
+//     * @return 代数是否已变化
+//     */
+//    public boolean awaitGenerationChange(long fromGeneration, long timeoutMillis) throws InterruptedException {
+//        long deadline = System.currentTimeMillis() + timeoutMillis;
+//        synchronized (generationMonitor) {
+//            long remaining;
+//            while (generation == fromGeneration && (remaining = deadline - System.currentTimeMillis()) > 0) {
+//                generationMonitor.wait(remaining);
+//            }
+//        }
+//        return generation != fromGeneration || refreshGeneration() != fromGeneration;
+//    }
+//
+//    /**
+//     * 重建开始时调用：分配一个新的代数，新数据写在这一代的 key 下
+//     */
+//    public long allocateGeneration() {
+//        Long next = redisTemplate.opsForValue().increment(REDIS_KEY_GENERATION_SEQ);
+//        return next != null ? next : 0L;
+//    }
+//
+//    /**
+//     * 重建完成后调用：原子切换当前代数指针，并广播给所有节点（包括自己）
+//     */
+//    public void publishGeneration(long newGeneration) {
+//        redisTemplate.opsForValue().set(REDIS_KEY_CURRENT_GENERATION, newGeneration);
+//        onGenerationChanged(newGeneration);
+//        redisTemplate.convertAndSend(REDIS_CHANNEL_INVALIDATE, newGeneration);
+//        log.info("SecurityMaster 当前代数已切换到 {}，已广播失效通知", newGeneration);
+//    }
+//
+//    @Override
+//    public void onMessage(Message message, byte[] pattern) {
+//        try {
+//            Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+//            if (body instanceof Number) {
+//                onGenerationChanged(((Number) body).longValue());
+//            } else {
+//                // 无法识别的消息，直接全部失效并重新读取代数
+//                log.warn("收到无法识别的 SecurityMaster 失效消息: {}", body);
+//                generation = -1;
+//                cache.invalidateAll();
+//                negativeCache.invalidateAll();
+//            }
+//        } catch (Exception e) {
+//            log.error("处理 SecurityMaster 失效消息失败", e);
+//            generation = -1;
+//            cache.invalidateAll();
+//            negativeCache.invalidateAll();
+//        }
+//    }
+//
+//    private void onGenerationChanged(long newGeneration) {
+//        synchronized (generationMonitor) {
+//            // 这里用“不相等”而不是“变大”判断：Redis 被 flush 后代数会从头计数
+//            if (newGeneration == generation) {
+//                return;
+//            }
+//            generation = newGeneration;
+//            generationChangedAt = System.currentTimeMillis();
+//            generationMonitor.notifyAll();
+//        }
+//        // key 已带代数，旧条目不会再被命中，这里清掉只是为了尽快释放内存
+//        cache.invalidateAll();
+//        negativeCache.invalidateAll();
+//        log.info("SecurityMaster 近端缓存已失效，当前代数={}", newGeneration);
+//    }
+//
+//    private long readGeneration() {
+//        Object value = redisTemplate.opsForValue().get(REDIS_KEY_CURRENT_GENERATION);
+//        if (value instanceof Number) {
+//            return ((Number) value).longValue();
+//        }
+//        if (value != null) {
+//            try {
+//                return Long.parseLong(value.toString().trim());
+//            } catch (NumberFormatException e) {
+//                log.warn("SecurityMaster 数据代数格式错误: {}", value);
+//            }
+//        }
+//        return 0L;
+//    }
+//
+//    private record NearCacheKey(long generation, String region, String assetType, String field) {
+//    }
+//}
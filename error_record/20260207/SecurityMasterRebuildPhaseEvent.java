@@ -0,0 +1,68 @@
+//package cn.bochk.pap.server.business.service;
+//
+//import jdk.jfr.Category;
+//import jdk.jfr.Description;
+//import jdk.jfr.Event;
+//import jdk.jfr.Label;
+//import jdk.jfr.Name;
+//import jdk.jfr.StackTrace;
+//
+///**
+// * SecurityMaster 缓存重建各阶段的 JFR 事件，每个阶段（每张表 / 每个 assetType）一条
+// * 读取阶段的事件在 security-master-reader / security-master-load-* 线程上，写入阶段在执行 buildCache 的线程上，
+// * 可以和同一时间段的 GC、线程阻塞事件直接对照
+// *
+// * @author liuhb
+// */
+//@Name("cn.bochk.pap.SecurityMasterRebuildPhase")
+//@Label("SecurityMaster Rebuild Phase")
+//@Category({"PAP", "SecurityMaster"})
+//@Description("SecurityMaster 缓存重建阶段")
+//@StackTrace(false)
+//public class SecurityMasterRebuildPhaseEvent extends Event {
+//
+//    static final String TABLE_SWITCH_LOG = "TABLE_SWITCH_LOG";
+//    static final String ASSET_TYPE = "ASSET_TYPE";
+//    static final String TABLE_QUERY = "TABLE_QUERY";
+//    /**
+//     * 读取阶段：合并同一 assetType 各张表的结果并冻结 clientId 集合
+//     */
+//    static final String MAP_BUILD = "MAP_BUILD";
+//    /**
+//     * 写入阶段：按桶拆分、构建反向索引和布隆过滤器
+//     */
+//    static final String INDEX_BUILD = "INDEX_BUILD";
+//    static final String REDIS_WRITE = "REDIS_WRITE";
+//    static final String EXPIRE = "EXPIRE";
+//
+//    @Label("Phase")
+//    String phase;
+//
+//    @Label("Asset Type")
+//    String assetType;
+//
+//    @Label("Table Name")
+//    String tableName;
+//
+//    /**
+//     * 行数 / 记录数 / key 数，含义随阶段不同
+//     */
+//    @Label("Count")
+//    long count;
+//
+//    /**
+//     * 写入阶段的代数，读取阶段为 0
+//     */
+//    @Label("Generation")
+//    long generation;
+//
+//    /**
+//     * 创建并开始一个阶段事件，阶段结束时调用 commit()
+//     */
+//    static SecurityMasterRebuildPhaseEvent start(String phase) {
+//        SecurityMasterRebuildPhaseEvent event = new SecurityMasterRebuildPhaseEvent();
+//        event.phase = phase;
+//        event.begin();
+//        return event;
+//    }
+//}
@@ -0,0 +1,135 @@
+//package cn.bochk.pap.server.business.service;
+//
+//import jakarta.annotation.PostConstruct;
+//import jakarta.annotation.PreDestroy;
+//import jakarta.annotation.Resource;
+//import lombok.extern.slf4j.Slf4j;
+//import org.springframework.dao.DataAccessException;
+//import org.springframework.data.redis.core.RedisCallback;
+//import org.springframework.data.redis.core.RedisTemplate;
+//import org.springframework.stereotype.Component;
+//
+//import java.util.concurrent.Executors;
+//import java.util.concurrent.ScheduledExecutorService;
+//import java.util.concurrent.TimeUnit;
+//import java.util.concurrent.atomic.AtomicInteger;
+//
+///**
+// * SecurityMaster 查询访问 Redis 的熔断器
+// * 连续 circuitBreakerFailureThreshold 次访问 Redis 失败（连接失败、命令超时等）后打开，
+// * 打开期间查询不再访问 Redis、也不会触发 initCache，直接使用本地副本（SecurityMasterLocalCopy）；
+// * 后台线程每隔 circuitBreakerProbeInterval 发送一次 PING，成功后关闭，并重新读取代数指针（熔断期间可能错过切换广播）
+// * 慢请求由 Lettuce 的命令超时（spring.data.redis.timeout）截断，超时同样计为失败
+// *
+// * @author liuhb
+// */
+//@Component
+//@Slf4j
+//public class SecurityMasterRedisCircuitBreaker {
+//
+//    @Resource
+//    private RedisTemplate<String, Object> redisTemplate;
+//
+//    @Resource
+//    private SecurityMasterNearCache nearCache;
+//
+//    @Resource
+//    private SecurityMasterCacheProperties properties;
+//
+//    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+//
+//    private volatile boolean open;
+//
+//    /**
+//     * 最近一次打开的时间，关闭时为 0
+//     */
+//    private volatile long openedAt;
+//
+//    private ScheduledExecutorService prober;
+//
+//    @PostConstruct
+//    public void init() {
+//        if (!properties.isCircuitBreakerEnabled()) {
+//            return;
+//        }
+//        prober = Executors.newSingleThreadScheduledExecutor(r -> {
+//            Thread thread = new Thread(r, "security-master-redis-probe");
+//            thread.setDaemon(true);
+//            return thread;
+//        });
+//        long intervalMillis = properties.getCircuitBreakerProbeInterval().toMillis();
+//        prober.scheduleWithFixedDelay(this::probe, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+//    }
+//
+//    @PreDestroy
+//    public void destroy() {
+//        if (prober != null) {
+//            prober.shutdownNow();
+//        }
+//    }
+//
+//    /**
+//     * 当前是否允许访问 Redis
+//     */
+//    public boolean allowRequest() {
+//        return !open;
+//    }
+//
+//    public boolean isOpen() {
+//        return open;
+//    }
+//
+//    public long getOpenedAt() {
+//        return openedAt;
+//    }
+//
+//    /**
+//     * 一次成功的 Redis 访问，清零连续失败计数
+//     */
+//    void recordSuccess() {
+//        if (consecutiveFailures.get() != 0) {
+//            consecutiveFailures.set(0);
+//        }
+//    }
+//
+//    /**
+//     * 一次失败的 Redis 访问，连续失败达到阈值时打开熔断
+//     */
+//    void recordFailure(DataAccessException e) {
+//        if (!properties.isCircuitBreakerEnabled()) {
+//            return;
+//        }
+//        int failures = consecutiveFailures.incrementAndGet();
+//        log.warn("SecurityMaster 访问 Redis 失败（连续 {} 次）: {}", failures, e.getMessage());
+//        if (failures >= properties.getCircuitBreakerFailureThreshold() && !open) {
+//            synchronized (this) {
+//                if (!open) {
+//                    openedAt = System.currentTimeMillis();
+//                    open = true;
+//                    log.error("SecurityMaster Redis 熔断已打开，查询改用本地副本，每 {} 探测一次",
+//                            properties.getCircuitBreakerProbeInterval());
+//                }
+//            }
+//        }
+//    }
+//
+//    private void probe() {
+//        if (!open) {
+//            return;
+//        }
+//        try {
+//            String pong = redisTemplate.execute((RedisCallback<String>) connection -> connection.ping());
+//            if (!"PONG".equalsIgnoreCase(pong)) {
+//                return;
+//            }
+//            long openMillis = System.currentTimeMillis() - openedAt;
+//            consecutiveFailures.set(0);
+//            openedAt = 0;
+//            open = false;
+//            log.info("SecurityMaster Redis 已恢复，熔断关闭（打开 {} ms）", openMillis);
+//            nearCache.refreshGeneration();
+//        } catch (Exception e) {
+//            log.debug("SecurityMaster Redis 探测失败: {}", e.getMessage());
+//        }
+//    }
+//}
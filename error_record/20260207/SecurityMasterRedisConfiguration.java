@@ -0,0 +1,133 @@
+//package cn.bochk.pap.server.business.service;
+//
+//import io.lettuce.core.ReadFrom;
+//import jakarta.annotation.PreDestroy;
+//import lombok.extern.slf4j.Slf4j;
+//import org.springframework.context.annotation.Bean;
+//import org.springframework.context.annotation.Configuration;
+//import org.springframework.data.redis.connection.RedisConnectionFactory;
+//import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+//import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+//import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
+//import org.springframework.data.redis.core.RedisTemplate;
+//
+//import java.util.Set;
+//
+///**
+// * SecurityMaster 缓存专用的 Redis 配置
+// * 数据 hash 的 value（clientId 集合、表名集合）使用紧凑二进制编码，key 的序列化方式与全局 RedisTemplate 保持一致
+// * 查询可以按 readFrom 路由到副本（securityMasterReadRedisTemplate），构建、清理等写操作始终走主节点
+// *
+// * @author liuhb
+// */
+//@Configuration
+//@Slf4j
+//public class SecurityMasterRedisConfiguration {
+//
+//    /**
+//     * 超过 512 字节的集合才尝试压缩
+//     */
+//    private static final int COMPRESS_THRESHOLD = 512;
+//
+//    /**
+//     * 读副本专用的连接工厂，不注册为 bean（避免和全局 RedisConnectionFactory 冲突），由本类负责关闭
+//     */
+//    private LettuceConnectionFactory readConnectionFactory;
+//
+//    @Bean
+//    public ClientIdSetRedisSerializer clientIdSetRedisSerializer(RedisTemplate<String, Object> redisTemplate) {
+//        return new ClientIdSetRedisSerializer(redisTemplate.getHashValueSerializer(), COMPRESS_THRESHOLD);
+//    }
+//
+//    @Bean
+//    public RedisTemplate<String, Set<String>> securityMasterSetRedisTemplate(RedisConnectionFactory redisConnectionFactory,
+//                                                                             RedisTemplate<String, Object> redisTemplate,
+//                                                                             ClientIdSetRedisSerializer clientIdSetRedisSerializer) {
+//        RedisTemplate<String, Set<String>> template = new RedisTemplate<>();
+//        template.setConnectionFactory(redisConnectionFactory);
+//        template.setKeySerializer(redisTemplate.getKeySerializer());
+//        template.setHashKeySerializer(redisTemplate.getHashKeySerializer());
+//        template.setValueSerializer(clientIdSetRedisSerializer);
+//        template.setHashValueSerializer(clientIdSetRedisSerializer);
+//        template.afterPropertiesSet();
+//        return template;
+//    }
+//
+//    /**
+//     * 查询用的模板：readFrom 为 master（默认）或当前不是 Sentinel / Cluster 部署时，直接返回 securityMasterSetRedisTemplate；
+//     * 否则复制全局连接工厂的节点和客户端配置，只替换 ReadFrom，查询流量按该策略分到副本
+//     */
+//    @Bean
+//    public RedisTemplate<String, Set<String>> securityMasterReadRedisTemplate(RedisConnectionFactory redisConnectionFactory,
+//                                                                              RedisTemplate<String, Set<String>> securityMasterSetRedisTemplate,
+//                                                                              SecurityMasterCacheProperties properties) {
+//        String readFrom = properties.getReadFrom();
+//        if (readFrom == null || readFrom.isBlank() || "master".equalsIgnoreCase(readFrom)
+//                || "upstream".equalsIgnoreCase(readFrom)) {
+//            return securityMasterSetRedisTemplate;
+//        }
+//        if (!(redisConnectionFactory instanceof LettuceConnectionFactory lettuceConnectionFactory)) {
+//            log.warn("SecurityMaster 读副本需要 Lettuce 连接工厂，当前为 {}，查询仍走主节点",
+//                    redisConnectionFactory.getClass().getSimpleName());
+//            return securityMasterSetRedisTemplate;
+//        }
+//        LettuceClientConfiguration clientConfiguration =
+//                copyWithReadFrom(lettuceConnectionFactory.getClientConfiguration(), ReadFrom.valueOf(readFrom));
+//        if (lettuceConnectionFactory.getSentinelConfiguration() != null) {
+//            readConnectionFactory = new LettuceConnectionFactory(
+//                    lettuceConnectionFactory.getSentinelConfiguration(), clientConfiguration);
+//        } else if (lettuceConnectionFactory.getClusterConfiguration() != null) {
+//            readConnectionFactory = new LettuceConnectionFactory(
+//                    lettuceConnectionFactory.getClusterConfiguration(), clientConfiguration);
+//        } else {
+//            log.warn("SecurityMaster 读副本需要 Sentinel 或 Cluster 部署，当前为单节点，查询仍走主节点");
+//            return securityMasterSetRedisTemplate;
+//        }
+//        readConnectionFactory.afterPropertiesSet();
+//        readConnectionFactory.start();
+//        log.info("SecurityMaster 查询按 readFrom={} 路由", readFrom);
+//
+//        RedisTemplate<String, Set<String>> template = new RedisTemplate<>();
+//        template.setConnectionFactory(readConnectionFactory);
+//        template.setKeySerializer(securityMasterSetRedisTemplate.getKeySerializer());
+//        template.setHashKeySerializer(securityMasterSetRedisTemplate.getHashKeySerializer());
+//        template.setValueSerializer(securityMasterSetRedisTemplate.getValueSerializer());
+//        template.setHashValueSerializer(securityMasterSetRedisTemplate.getHashValueSerializer());
+//        template.afterPropertiesSet();
+//        return template;
+//    }
+//
+//    @PreDestroy
+//    public void destroy() {
+//        if (readConnectionFactory != null) {
+//            readConnectionFactory.destroy();
+//        }
+//    }
+//
+//    /**
+//     * 复制客户端配置（超时、SSL、连接池、ClientResources 等），只替换 ReadFrom
+//     */
+//    private static LettuceClientConfiguration copyWithReadFrom(LettuceClientConfiguration source, ReadFrom readFrom) {
+//        LettuceClientConfiguration.LettuceClientConfigurationBuilder builder =
+//                source instanceof LettucePoolingClientConfiguration pooling
+//                        ? LettucePoolingClientConfiguration.builder().poolConfig(pooling.getPoolConfig())
+//                        : LettuceClientConfiguration.builder();
+//        builder.commandTimeout(source.getCommandTimeout())
+//                .shutdownTimeout(source.getShutdownTimeout())
+//                .shutdownQuietPeriod(source.getShutdownQuietPeriod())
+//                .readFrom(readFrom);
+//        source.getClientOptions().ifPresent(builder::clientOptions);
+//        source.getClientResources().ifPresent(builder::clientResources);
+//        source.getClientName().ifPresent(builder::clientName);
+//        if (source.isUseSsl()) {
+//            LettuceClientConfiguration.LettuceSslClientConfigurationBuilder ssl = builder.useSsl();
+//            if (!source.isVerifyPeer()) {
+//                ssl.disablePeerVerification();
+//            }
+//            if (source.isStartTls()) {
+//                ssl.startTls();
+//            }
+//        }
+//        return builder.build();
+//    }
+//}
@@ -0,0 +1,277 @@
+//package cn.bochk.pap.server.business.service;
+//
+//import jakarta.annotation.Resource;
+//import lombok.extern.slf4j.Slf4j;
+//import org.springframework.data.redis.core.Cursor;
+//import org.springframework.data.redis.core.RedisCallback;
+//import org.springframework.data.redis.core.RedisTemplate;
+//import org.springframework.data.redis.core.ScanOptions;
+//import org.springframework.data.redis.serializer.RedisSerializer;
+//import org.springframework.stereotype.Component;
+//
+//import java.time.Duration;
+//import java.util.ArrayList;
+//import java.util.Collection;
+//import java.util.Collections;
+//import java.util.LinkedHashMap;
+//import java.util.List;
+//import java.util.Map;
+//import java.util.concurrent.TimeUnit;
+//
+///**
+// * SecurityMaster 缓存的 Redis 批量操作
+// * 写入时把大 hash 拆成固定字段数的 HSET 分块，和登记、EXPIRE 一起走 pipeline，避免单条几 MB 的命令卡住 Redis；
+// * 删除一律使用非阻塞的 UNLINK，并按固定大小分块走 pipeline；按前缀查找 key 使用游标 SCAN，不使用 KEYS
+// *
+// * @author liuhb
+// */
+//@Component
+//@Slf4j
+//public class SecurityMasterRedisWriter {
+//
+//    @Resource
+//    private RedisTemplate<String, Object> redisTemplate;
+//
+//    @Resource
+//    private SecurityMasterCacheProperties properties;
+//
+//    /**
+//     * 写入一个 hash：登记 key、分块 HSET、设置过期时间，全部在一个 pipeline 中完成
+//     *
+//     * @param key         hash key
+//     * @param fields      hash 内容
+//     * @param registryKey 所属代数的登记集合，为 null 时不登记
+//     * @param ttl         过期时间
+//     * @return 写入统计
+//     */
+//    @SuppressWarnings("unchecked")
+//    public WriteStats writeHash(String key, Map<String, ?> fields, String registryKey, Duration ttl) {
+//        return writeHash(key, (Map<String, Object>) fields, registryKey, ttl,
+//                (RedisSerializer<Object>) redisTemplate.getHashValueSerializer());
+//    }
+//
+//    /**
+//     * 同上，hash value 使用指定的序列化器（例如 clientId 集合的二进制编码）
+//     */
+//    public <V> WriteStats writeHash(String key, Map<String, V> fields, String registryKey, Duration ttl,
+//                                    RedisSerializer<V> hashValueSerializer) {
+//        return writeHashes(Collections.singletonMap(key, fields), registryKey, ttl, hashValueSerializer);
+//    }
+//
+//    /**
+//     * 一次写入多个 hash（例如按桶拆分后的数据 hash）：所有 key 的登记、分块 HSET、过期时间在同一个 pipeline 中完成
+//     *
+//     * @param hashes      key → hash 内容
+//     * @param registryKey 所属代数的登记集合，为 null 时不登记
+//     * @param ttl         过期时间
+//     * @return 写入统计
+//     */
+//    @SuppressWarnings("unchecked")
+//    public <V> WriteStats writeHashes(Map<String, ? extends Map<String, V>> hashes, String registryKey, Duration ttl,
+//                                      RedisSerializer<V> hashValueSerializer) {
+//        long startNanos = System.nanoTime();
+//        int chunkSize = properties.getRedisHsetChunkSize();
+//        RedisSerializer<String> hashKeySerializer = (RedisSerializer<String>) redisTemplate.getHashKeySerializer();
+//        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+//
+//        // 先在调用线程里完成序列化并分块，pipeline 中只做发送
+//        List<byte[]> rawKeys = new ArrayList<>(hashes.size());
+//        List<byte[]> chunkKeys = new ArrayList<>();
+//        List<Map<byte[], byte[]>> chunks = new ArrayList<>();
+//        byte[][] rawRegistryMembers = new byte[hashes.size()][];
+//        int fieldCount = 0;
+//        long bytes = 0L;
+//        for (Map.Entry<String, ? extends Map<String, V>> hash : hashes.entrySet()) {
+//            byte[] rawKey = rawKey(hash.getKey());
+//            rawRegistryMembers[rawKeys.size()] = valueSerializer.serialize(hash.getKey());
+//            rawKeys.add(rawKey);
+//            Map<byte[], byte[]> chunk = new LinkedHashMap<>();
+//            for (Map.Entry<String, V> entry : hash.getValue().entrySet()) {
+//                byte[] rawField = hashKeySerializer.serialize(entry.getKey());
+//                byte[] rawValue = hashValueSerializer.serialize(entry.getValue());
+//                chunk.put(rawField, rawValue);
+//                bytes += rawField.length + rawValue.length;
+//                if (chunk.size() >= chunkSize) {
+//                    chunkKeys.add(rawKey);
+//                    chunks.add(chunk);
+//                    chunk = new LinkedHashMap<>();
+//                }
+//            }
+//            if (!chunk.isEmpty()) {
+//                chunkKeys.add(rawKey);
+//                chunks.add(chunk);
+//            }
+//            fieldCount += hash.getValue().size();
+//        }
+//        byte[] rawRegistryKey = registryKey != null ? rawKey(registryKey) : null;
+//
+//        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+//            if (rawRegistryKey != null && rawRegistryMembers.length > 0) {
+//                connection.setCommands().sAdd(rawRegistryKey, rawRegistryMembers);
+//            }
+//            for (int i = 0; i < chunks.size(); i++) {
+//                connection.hashCommands().hMSet(chunkKeys.get(i), chunks.get(i));
+//            }
+//            for (byte[] rawKey : rawKeys) {
+//                connection.keyCommands().pExpire(rawKey, ttl.toMillis());
+//            }
+//            return null;
+//        });
+//
+//        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+//        int commands = chunks.size() + rawKeys.size() + (rawRegistryKey != null ? 1 : 0);
+//        return new WriteStats(fieldCount, bytes, commands, elapsedMillis);
+//    }
+//
+//    /**
+//     * 写入一个二进制 value（例如序列化后的布隆过滤器）：登记 key、SET 并带过期时间，在一个 pipeline 中完成
+//     *
+//     * @param key         key
+//     * @param value       原始字节
+//     * @param registryKey 所属代数的登记集合，为 null 时不登记
+//     * @param ttl         过期时间
+//     * @return 写入统计
+//     */
+//    @SuppressWarnings("unchecked")
+//    public WriteStats writeBytes(String key, byte[] value, String registryKey, Duration ttl) {
+//        long startNanos = System.nanoTime();
+//        byte[] rawKey = rawKey(key);
+//        byte[] rawRegistryKey = registryKey != null ? rawKey(registryKey) : null;
+//        byte[] rawRegistryMember = registryKey != null
+//                ? ((RedisSerializer<Object>) redisTemplate.getValueSerializer()).serialize(key) : null;
+//
+//        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+//            if (rawRegistryKey != null) {
+//                connection.setCommands().sAdd(rawRegistryKey, rawRegistryMember);
+//            }
+//            connection.stringCommands().pSetEx(rawKey, ttl.toMillis(), value);
+//            return null;
+//        });
+//
+//        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+//        return new WriteStats(1, value.length, rawRegistryKey != null ? 2 : 1, elapsedMillis);
+//    }
+//
+//    /**
+//     * 读取 writeBytes 写入的二进制 value
+//     *
+//     * @return 原始字节，key 不存在时返回 null
+//     */
+//    public byte[] readBytes(String key) {
+//        byte[] rawKey = rawKey(key);
+//        return redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(rawKey));
+//    }
+//
+//    /**
+//     * 批量设置过期时间，走同一个 pipeline
+//     */
+//    public void expire(Collection<String> keys, Duration ttl) {
+//        if (keys == null || keys.isEmpty()) {
+//            return;
+//        }
+//        List<byte[]> rawKeys = new ArrayList<>(keys.size());
+//        for (String key : keys) {
+//            rawKeys.add(rawKey(key));
+//        }
+//        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+//            for (byte[] rawKey : rawKeys) {
+//                connection.keyCommands().pExpire(rawKey, ttl.toMillis());
+//            }
+//            return null;
+//        });
+//    }
+//
+//    /**
+//     * 分块 UNLINK 指定的 key
+//     *
+//     * @param keys 要删除的 key
+//     * @return 实际删除的 key 数量
+//     */
+//    public long unlink(Collection<String> keys) {
+//        if (keys == null || keys.isEmpty()) {
+//            return 0L;
+//        }
+//        int chunkSize = properties.getRedisDeleteChunkSize();
+//        List<byte[]> rawKeys = new ArrayList<>(keys.size());
+//        for (String key : keys) {
+//            rawKeys.add(rawKey(key));
+//        }
+//        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+//            for (int from = 0; from < rawKeys.size(); from += chunkSize) {
+//                List<byte[]> chunk = rawKeys.subList(from, Math.min(from + chunkSize, rawKeys.size()));
+//                connection.keyCommands().unlink(chunk.toArray(new byte[0][]));
+//            }
+//            return null;
+//        });
+//        return sum(results);
+//    }
+//
+//    /**
+//     * 用 SCAN 游标按 pattern 查找 key，每攒够一块就 UNLINK 一次，不会像 KEYS 一样长时间阻塞 Redis
+//     *
+//     * @param pattern 匹配模式，例如 br_security_master:data:*
+//     * @return 实际删除的 key 数量
+//     */
+//    public long unlinkByPattern(String pattern) {
+//        int chunkSize = properties.getRedisDeleteChunkSize();
+//        ScanOptions options = ScanOptions.scanOptions()
+//                .match(pattern)
+//                .count(properties.getRedisScanCount())
+//                .build();
+//        long deleted = 0L;
+//        List<String> batch = new ArrayList<>(chunkSize);
+//        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+//            while (cursor.hasNext()) {
+//                batch.add(cursor.next());
+//                if (batch.size() >= chunkSize) {
+//                    deleted += unlink(batch);
+//                    batch.clear();
+//                }
+//            }
+//        }
+//        deleted += unlink(batch);
+//        return deleted;
+//    }
+//
+//    @SuppressWarnings("unchecked")
+//    private byte[] rawKey(String key) {
+//        return ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(key);
+//    }
+//
+//    /**
+//     * 一次写入的统计：字段数、序列化后的字节数、发送的命令数、耗时
+//     */
+//    public record WriteStats(int fields, long bytes, int commands, long elapsedMillis) {
+//
+//        public static final WriteStats EMPTY = new WriteStats(0, 0L, 0, 0L);
+//
+//        public WriteStats plus(WriteStats other) {
+//            return new WriteStats(fields + other.fields, bytes + other.bytes,
+//                    commands + other.commands, elapsedMillis + other.elapsedMillis);
+//        }
+//
+//        /**
+//         * 每秒写入的字段数
+//         */
+//        public long fieldsPerSecond() {
+//            return elapsedMillis > 0 ? fields * 1000L / elapsedMillis : fields;
+//        }
+//
+//        /**
+//         * 每秒写入的 KB 数
+//         */
+//        public long kilobytesPerSecond() {
+//            return elapsedMillis > 0 ? bytes * 1000L / 1024 / elapsedMillis : bytes / 1024;
+//        }
+//    }
+//
+//    private static long sum(List<Object> results) {
+//        long total = 0L;
+//        for (Object result : results) {
+//            if (result instanceof Number) {
+//                total += ((Number) result).longValue();
+//            }
+//        }
+//        return total;
+//    }
+//}
@@ -0,0 +1,259 @@
+//package cn.bochk.pap.server.business.service;
+//
+//import jakarta.annotation.Resource;
+//import lombok.extern.slf4j.Slf4j;
+//import org.springframework.stereotype.Component;
+//
+//import java.io.IOException;
+//import java.nio.ByteBuffer;
+//import java.nio.MappedByteBuffer;
+//import java.nio.channels.FileChannel;
+//import java.nio.charset.StandardCharsets;
+//import java.nio.file.DirectoryStream;
+//import java.nio.file.Files;
+//import java.nio.file.Path;
+//import java.nio.file.Paths;
+//import java.nio.file.StandardCopyOption;
+//import java.nio.file.StandardOpenOption;
+//import java.util.ArrayList;
+//import java.util.HashMap;
+//import java.util.HashSet;
+//import java.util.List;
+//import java.util.Map;
+//import java.util.Set;
+//import java.util.function.Predicate;
+//import java.util.zip.CRC32;
+//
+///**
+// * SecurityMaster 本地快照
+// * 每次从数据库加载成功后，把每个资产类型的 matchFieldValue → Set<clientId> 写到本地磁盘，
+// * 文件名由业务日期、资产类型和配置指纹（含物理表名后缀）组成；Pod 重启或 Redis 被清空后，
+// * 只要业务日期和 TABLE_SWITCH_LOG 都没变，就直接从快照恢复，不再扫描 BR_SECURITY_MASTER_* 表；
+// * 快照超过 incrementalMaxReuseAge 后不再使用，保证定期从数据库重新加载一次
+// * <p>
+// * 文件格式：magic(4) | version(4) | createdAt(8) | payloadLength(4) | crc32(8) | payload
+// * payload 为 entryCount 加上逐条的 key 和 clientId 列表，字符串均为 长度(4) + UTF-8 字节
+// *
+// * @author liuhb
+// */
+//@Component
+//@Slf4j
+//public class SecurityMasterSnapshotStore {
+//
+//    private static final int MAGIC = 0x534D5331;
+//    private static final int VERSION = 2;
+//    private static final int HEADER_LENGTH = 28;
+//    private static final String FILE_SUFFIX = ".snap";
+//
+//    @Resource
+//    private SecurityMasterCacheProperties properties;
+//
+//    /**
+//     * 读取快照；文件不存在、格式不对、校验和不一致或超过 incrementalMaxReuseAge 时返回 null，由调用方回退到数据库
+//     * 文件以只读方式映射到内存，字符串读出后交给本次构建的字典统一实例
+//     *
+//     * @param businessDate 业务日期，yyyyMMdd
+//     * @param assetType    资产类型
+//     * @param fingerprint  资产类型配置指纹
+//     * @param dictionary   本次构建的 clientId 字典
+//     * @return matchFieldValue → Set<clientId>，内层 Set 为不可变集合
+//     */
+//    Map<String, Set<String>> read(String businessDate, String assetType, String fingerprint,
+//                                  ClientIdDictionary dictionary) {
+//        if (!properties.isSnapshotEnabled()) {
+//            return null;
+//        }
+//        Path file = snapshotFile(businessDate, assetType, fingerprint);
+//        if (!Files.isRegularFile(file)) {
+//            return null;
+//        }
+//        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+//            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+//            if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+//                log.warn("SecurityMaster 快照格式不正确，忽略: {}", file);
+//                return null;
+//            }
+//            long createdAt = buffer.getLong();
+//            long age = System.currentTimeMillis() - createdAt;
+//            if (age > properties.getIncrementalMaxReuseAge().toMillis()) {
+//                log.info("SecurityMaster 快照已超过最长复用时间（{} 分钟），重新从数据库加载: {}", age / 60_000, file);
+//                return null;
+//            }
+//            int payloadLength = buffer.getInt();
+//            long expectedCrc = buffer.getLong();
+//            if (payloadLength != buffer.remaining()) {
+//                log.warn("SecurityMaster 快照长度不一致，忽略: {}", file);
+//                return null;
+//            }
+//            CRC32 crc = new CRC32();
+//            crc.update(buffer.slice());
+//            if (crc.getValue() != expectedCrc) {
+//                log.warn("SecurityMaster 快照校验和不一致，忽略: {}", file);
+//                return null;
+//            }
+//
+//            int entryCount = buffer.getInt();
+//            Map<String, Set<String>> dataMap = new HashMap<>(entryCount * 4 / 3 + 1);
+//            for (int i = 0; i < entryCount; i++) {
+//                String matchFieldValue = readString(buffer);
+//                int size = buffer.getInt();
+//                String[] clientIds = new String[size];
+//                for (int j = 0; j < size; j++) {
+//                    clientIds[j] = dictionary.canonicalize(readString(buffer));
+//                }
+//                dataMap.put(matchFieldValue, Set.of(clientIds));
+//            }
+//            return dataMap;
+//        } catch (IOException | RuntimeException e) {
+//            log.warn("读取 SecurityMaster 快照失败，回退到数据库: {}, {}", file, e.getMessage());
+//            return null;
+//        }
+//    }
+//
+//    /**
+//     * 写入快照：先写临时文件再原子替换，其他节点 / 重启后的进程不会读到写了一半的文件
+//     * 写入失败只记录日志，不影响本次构建
+//     */
+//    void write(String businessDate, String assetType, String fingerprint, Map<String, Set<String>> dataMap) {
+//        if (!properties.isSnapshotEnabled()) {
+//            return;
+//        }
+//        Path file = snapshotFile(businessDate, assetType, fingerprint);
+//        try {
+//            Files.createDirectories(file.getParent());
+//            ByteBuffer payload = encode(dataMap);
+//            CRC32 crc = new CRC32();
+//            crc.update(payload.duplicate());
+//
+//            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+//            header.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis()).putInt(payload.remaining()).putLong(crc.getValue()).flip();
+//
+//            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+//            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+//                while (header.hasRemaining()) {
+//                    channel.write(header);
+//                }
+//                while (payload.hasRemaining()) {
+//                    channel.write(payload);
+//                }
+//                channel.force(true);
+//            }
+//            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+//            log.info("SecurityMaster 快照已写入: {}（{} 条记录，{} KB）",
+//                    file, dataMap.size(), (HEADER_LENGTH + payload.capacity()) / 1024);
+//        } catch (IOException | RuntimeException e) {
+//            log.warn("写入 SecurityMaster 快照失败: {}, {}", file, e.getMessage());
+//        }
+//    }
+//
+//    /**
+//     * 删除不会再用到的快照：早于当前业务日期的，以及当前业务日期下旧的表后缀 / 配置
+//     * 晚于当前业务日期的是日切预加载写入的，日切前 Redis 丢失预加载代数时还要靠它恢复，保留到该日期生效后再清理
+//     *
+//     * @param businessDate 业务日期，yyyyMMdd
+//     * @param fingerprints 当前 assetType → 配置指纹
+//     */
+//    void retainOnly(String businessDate, Map<String, String> fingerprints) {
+//        Set<Path> retained = new HashSet<>();
+//        fingerprints.forEach((assetType, fingerprint) ->
+//                retained.add(snapshotFile(businessDate, assetType, fingerprint).getFileName()));
+//        prune(file -> {
+//            int compare = snapshotBusinessDate(file).compareTo(businessDate);
+//            return compare < 0 || (compare == 0 && !retained.contains(file.getFileName()));
+//        });
+//    }
+//
+//    /**
+//     * 日切后删除早于新业务日期的快照
+//     *
+//     * @param businessDate 新的业务日期，yyyyMMdd
+//     */
+//    void deleteBefore(String businessDate) {
+//        prune(file -> snapshotBusinessDate(file).compareTo(businessDate) < 0);
+//    }
+//
+//    private void prune(Predicate<Path> isStale) {
+//        if (!properties.isSnapshotEnabled()) {
+//            return;
+//        }
+//        Path directory = Paths.get(properties.getSnapshotDirectory());
+//        if (!Files.isDirectory(directory)) {
+//            return;
+//        }
+//        List<Path> stale = new ArrayList<>();
+//        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+//            for (Path file : files) {
+//                if (isStale.test(file)) {
+//                    stale.add(file);
+//                }
+//            }
+//        } catch (IOException e) {
+//            log.warn("清理 SecurityMaster 快照失败: {}", e.getMessage());
+//            return;
+//        }
+//        for (Path file : stale) {
+//            try {
+//                Files.deleteIfExists(file);
+//            } catch (IOException e) {
+//                log.warn("删除 SecurityMaster 快照失败: {}, {}", file, e.getMessage());
+//            }
+//        }
+//        if (!stale.isEmpty()) {
+//            log.info("已删除 {} 个过期的 SecurityMaster 快照", stale.size());
+//        }
+//    }
+//
+//    /**
+//     * 文件名中的业务日期（yyyyMMdd，可以直接按字符串比较先后）
+//     */
+//    private static String snapshotBusinessDate(Path file) {
+//        String fileName = file.getFileName().toString();
+//        int separator = fileName.indexOf('-');
+//        return separator > 0 ? fileName.substring(0, separator) : "";
+//    }
+//
+//    private Path snapshotFile(String businessDate, String assetType, String fingerprint) {
+//        String safeAssetType = assetType.trim().replaceAll("[^A-Za-z0-9_-]", "_");
+//        return Paths.get(properties.getSnapshotDirectory(),
+//                businessDate + "-" + safeAssetType + "-" + fingerprint + FILE_SUFFIX);
+//    }
+//
+//    private static ByteBuffer encode(Map<String, Set<String>> dataMap) {
+//        // 先转成字节并计算总长度，再一次性分配缓冲区
+//        List<byte[]> strings = new ArrayList<>();
+//        int length = 4;
+//        for (Map.Entry<String, Set<String>> entry : dataMap.entrySet()) {
+//            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+//            strings.add(key);
+//            length += 4 + key.length + 4;
+//            for (String clientId : entry.getValue()) {
+//                byte[] value = clientId.getBytes(StandardCharsets.UTF_8);
+//                strings.add(value);
+//                length += 4 + value.length;
+//            }
+//        }
+//
+//        ByteBuffer buffer = ByteBuffer.allocate(length);
+//        buffer.putInt(dataMap.size());
+//        int index = 0;
+//        for (Set<String> clientIds : dataMap.values()) {
+//            putString(buffer, strings.get(index++));
+//            buffer.putInt(clientIds.size());
+//            for (int j = 0; j < clientIds.size(); j++) {
+//                putString(buffer, strings.get(index++));
+//            }
+//        }
+//        return buffer.flip();
+//    }
+//
+//    private static void putString(ByteBuffer buffer, byte[] bytes) {
+//        buffer.putInt(bytes.length);
+//        buffer.put(bytes);
+//    }
+//
+//    private static String readString(ByteBuffer buffer) {
+//        byte[] bytes = new byte[buffer.getInt()];
+//        buffer.get(bytes);
+//        return new String(bytes, StandardCharsets.UTF_8);
+//    }
+//}